@@ -0,0 +1,26 @@
+/**
+ * BenchmarkMain.java
+ */
+package org.fit.vips;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate is reported together with the time.
+ * The usual JMH command line options may be given, e.g. a regular expression selecting the benchmarks.
+ */
+public class BenchmarkMain
+{
+	public static void main(String[] args) throws Exception
+	{
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
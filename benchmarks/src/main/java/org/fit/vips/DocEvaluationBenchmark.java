@@ -0,0 +1,64 @@
+/**
+ * DocEvaluationBenchmark.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Degree of coherence evaluation of every inner area of a page, as done by the operator's docEvaluation()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocEvaluationBenchmark
+{
+	@Param({ "500", "5000" })
+	public int areaCount;
+
+	@Param({ "42" })
+	public long seed;
+
+	private List<AreaImpl> areas;
+	private VipsBasedDocEvaluator evaluator;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		areas = new ArrayList<AreaImpl>();
+		for (AreaImpl area : SyntheticPages.getAreas(SyntheticPages.createPage(seed, areaCount)))
+		{
+			if(area.getChildCount() != 0)
+				areas.add(area);
+		}
+		evaluator = new VipsBasedDocEvaluator();
+	}
+
+	@Benchmark
+	public float evaluate()
+	{
+		float sum = 0;
+		for (AreaImpl area : areas)
+			sum += evaluator.evaluate(area, 0f, 1f);
+		return sum;
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * IncrementalEquivalenceCheck.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Rectangular;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.SyntheticPages.Shape;
+
+/**
+ * Checks that the incremental segmentation gives the same results as the segmentation from scratch.
+ * Synthetic pages of all the shapes are segmented by {@link VipsBasedIncrementalSegmenter}, then
+ * they are changed in several steps and resegmented. The output area tree, the visual blocks
+ * with their degrees of coherence and the detected separators of every step are compared with
+ * a new operator run on a copy of the changed page. The pages are segmented with several permitted
+ * degrees of coherence, so the divisions stop at different levels of the trees.
+ * <p>
+ * Usage: <code>IncrementalEquivalenceCheck [pages [area count [steps]]]</code>, e.g.
+ * <code>IncrementalEquivalenceCheck 100 400 5</code>.
+ * The exit code is 1 if some result differs.
+ */
+public class IncrementalEquivalenceCheck
+{
+	private static final int defaultPages = 100;
+	private static final int defaultAreaCount = 400;
+	private static final int defaultSteps = 5;
+
+	private static final float[] permittedDocs = { 0.3f, 0.6f, 0.9f };
+
+	private final int pages;
+	private final int areaCount;
+	private final int steps;
+
+	/** Results of the actual shape */
+	private int same, different, failed;
+	/** Differing results of all the shapes */
+	private int totalDifferent = 0;
+	private long reusedBlocks = 0;
+	private long visualBlocks = 0;
+
+	public IncrementalEquivalenceCheck(int pages, int areaCount, int steps)
+	{
+		this.pages = pages;
+		this.areaCount = areaCount;
+		this.steps = steps;
+	}
+
+	public static void main(String[] args)
+	{
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : defaultPages;
+		int areaCount = args.length > 1 ? Integer.parseInt(args[1]) : defaultAreaCount;
+		int steps = args.length > 2 ? Integer.parseInt(args[2]) : defaultSteps;
+
+		boolean passed = new IncrementalEquivalenceCheck(pages, areaCount, steps).run();
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Runs the check for all the shapes and prints the results
+	 * @return true if all the incremental segmentations gave the results of the segmentations from scratch
+	 */
+	public boolean run()
+	{
+		for (Shape shape : Shape.values())
+		{
+			same = different = failed = 0;
+			for (float pDoc : permittedDocs)
+			{
+				for (int seed = 0; seed < pages; seed++)
+					checkPage(shape, pDoc, seed);
+			}
+			System.out.println(String.format("%-12s same %d, different %d, failed %d", shape, same, different, failed));
+			totalDifferent += different;
+		}
+		System.out.println(String.format("reused visual blocks %d of %d", reusedBlocks, visualBlocks));
+		boolean passed = totalDifferent == 0;
+		System.out.println(passed ? "PASSED" : "FAILED");
+		return passed;
+	}
+
+	private void checkPage(Shape shape, float pDoc, int seed)
+	{
+		AreaImpl page = SyntheticPages.createPage(seed, areaCount, shape);
+		VipsBasedIncrementalSegmenter segmenter = new VipsBasedIncrementalSegmenter(new VipsBasedOperator(pDoc), page);
+		Random random = new Random(seed);
+
+		compare(shape, pDoc, seed, 0, page, segmenter, Collections.<Area>emptyList());
+		//nothing changed, all the divisions are replayed
+		compare(shape, pDoc, seed, 1, page, segmenter, Collections.<Area>emptyList());
+		for (int step = 2; step < steps + 2; step++)
+			compare(shape, pDoc, seed, step, page, segmenter, change(page, random));
+	}
+
+	/**
+	 * Resegments the page and compares the result with the segmentation of the page from scratch
+	 */
+	private void compare(Shape shape, float pDoc, int seed, int step, AreaImpl page,
+			VipsBasedIncrementalSegmenter segmenter, List<Area> changedAreas)
+	{
+		String expected;
+		try
+		{
+			AreaImpl copy = copy(page);
+			VipsBasedOperator operator = new VipsBasedOperator(pDoc);
+			operator.apply(null, copy);
+			expected = describe(copy, operator.getVisualBlocksPool(), operator.getDetectedSeparators());
+		}
+		catch (RuntimeException e)
+		{
+			expected = "failure " + e.getClass().getName();
+		}
+		catch (StackOverflowError e)
+		{
+			expected = "failure " + e.getClass().getName();
+		}
+
+		String actual;
+		try
+		{
+			AreaImpl result = step == 0 ? segmenter.segment() : segmenter.resegment(changedAreas);
+			actual = describe(result, segmenter.getVisualBlocks(), segmenter.getDetectedSeparators());
+			reusedBlocks += segmenter.getReusedVisualBlocks();
+			visualBlocks += segmenter.getVisualBlocks().size();
+		}
+		catch (RuntimeException e)
+		{
+			actual = "failure " + e.getClass().getName();
+		}
+		catch (StackOverflowError e)
+		{
+			actual = "failure " + e.getClass().getName();
+		}
+
+		if(!expected.equals(actual))
+		{
+			different++;
+			System.out.println(String.format("  %s, pDoC %.1f, page %d, step %d differs: %s",
+					shape, pDoc, seed, step, firstDifference(expected, actual)));
+		}
+		else if(expected.startsWith("failure "))
+			failed++; //fails both from scratch and incrementally
+		else
+			same++;
+	}
+
+	/**
+	 * Changes the page in place, either the list of the child areas of a random area or the bounds
+	 * of a random leaf area
+	 * @return changed areas
+	 */
+	private List<Area> change(AreaImpl page, Random random)
+	{
+		List<AreaImpl> areas = SyntheticPages.getAreas(page);
+		List<Area> changed = new ArrayList<Area>();
+		AreaImpl area = areas.get(random.nextInt(areas.size()));
+
+		if(area.getChildCount() > 1)
+		{
+			//removal of a child area
+			List<Area> children = new ArrayList<Area>(area.getChildAreas());
+			children.remove(random.nextInt(children.size()));
+			area.removeAllChildren();
+			for (Area child : children)
+				area.appendChild(child);
+			changed.add(area);
+		}
+		else if(area.getChildCount() == 1)
+		{
+			//a new sibling of the only child area below it
+			Area child = area.getChildArea(0);
+			AreaImpl sibling = new AreaImpl(child.getX1(), child.getY2() + 1, child.getX2(), child.getY2() + 1 + child.getHeight());
+			for (int i = 0; i < ((AreaImpl) child).getBoxes().size(); i++)
+				sibling.addBox(((AreaImpl) child).getBoxes().get(i));
+			area.appendChild(sibling);
+			changed.add(area);
+		}
+		else
+		{
+			//a shift of the leaf area
+			Rectangular bounds = area.getBounds();
+			int shift = 1 + random.nextInt(20);
+			area.setBounds(new Rectangular(bounds.getX1() + shift, bounds.getY1(), bounds.getX2() + shift, bounds.getY2()));
+			changed.add(area);
+		}
+		return changed;
+	}
+
+	/**
+	 * @return deep copy of the subtree, the boxes are shared
+	 */
+	static AreaImpl copy(AreaImpl root)
+	{
+		AreaImpl result = new AreaImpl(root);
+		for (Area child : root.getChildAreas())
+			result.appendChild(copy((AreaImpl) child));
+		return result;
+	}
+
+	/**
+	 * @return comparable description of the result of a segmentation
+	 */
+	static String describe(AreaImpl root, List<VipsBasedVisualBlock> blocks, List<VipsBasedSeparator> separators)
+	{
+		StringBuilder result = new StringBuilder();
+		describeTree(root, result);
+		result.append("\nblocks");
+		for (VipsBasedVisualBlock block : blocks)
+		{
+			result.append(' ').append(block.getArea().getBounds()).append(':').append(block.getDoc());
+		}
+		result.append("\nseparators");
+		for (VipsBasedSeparator separator : separators)
+		{
+			result.append(' ').append(separator).append(':').append(separator.getWeight());
+			result.append(':').append(separator.getArea1() == null ? "-" : separator.getArea1().getBounds().toString());
+			result.append(':').append(separator.getArea2() == null ? "-" : separator.getArea2().getBounds().toString());
+		}
+		return result.toString();
+	}
+
+	private static void describeTree(Area root, StringBuilder result)
+	{
+		result.append('(').append(root.getBounds());
+		for (Area child : root.getChildAreas())
+			describeTree(child, result);
+		result.append(')');
+	}
+
+	static String firstDifference(String expected, String actual)
+	{
+		int i = 0;
+		while (i < expected.length() && i < actual.length() && expected.charAt(i) == actual.charAt(i))
+			i++;
+		int start = Math.max(0, i - 40);
+		return "expected ..." + expected.substring(start, Math.min(expected.length(), i + 80))
+				+ "... but was ..." + actual.substring(start, Math.min(actual.length(), i + 80)) + "...";
+	}
+}
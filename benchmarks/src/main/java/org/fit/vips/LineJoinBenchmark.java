@@ -0,0 +1,63 @@
+/**
+ * LineJoinBenchmark.java
+ */
+package org.fit.vips;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Joining of the visual blocks on the lines of text. The phase changes the run context,
+ * so every invocation gets a page with freshly extracted visual blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineJoinBenchmark
+{
+	@Param({ "500", "5000" })
+	public int areaCount;
+
+	@Param({ "42" })
+	public long seed;
+
+	private VipsBasedOperator operator;
+	private VipsBasedRunContext context;
+
+	@Setup(Level.Trial)
+	public void setUpOperator()
+	{
+		operator = new VipsBasedOperator(0.6f);
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpPage()
+	{
+		AreaImpl root = SyntheticPages.createPage(seed, areaCount);
+		context = operator.createRunContext(root);
+		operator.extractVisualBlocks(context, root);
+	}
+
+	@Benchmark
+	public int joinLineVisualBlocks()
+	{
+		operator.joinLineVisualBlocks(context);
+		return context.detectedSeparators.size();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * OperatorBenchmark.java
+ */
+package org.fit.vips;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Whole segmentation of a page by {@link VipsBasedOperator#apply(org.fit.layout.model.AreaTree, org.fit.layout.model.Area)}.
+ * The operator changes the area tree, so every invocation gets a fresh page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark
+{
+	@Param({ "500", "5000" })
+	public int areaCount;
+
+	@Param({ "42" })
+	public long seed;
+
+	@Param({ "0.6" })
+	public float pdocValue;
+
+	/** Threads of the fork/join pool of the operator, 0 for the sequential segmentation */
+	@Param({ "0" })
+	public int threads;
+
+	private VipsBasedOperator operator;
+	private ForkJoinPool forkJoinPool;
+	private AreaImpl root;
+
+	@Setup(Level.Trial)
+	public void setUpOperator()
+	{
+		operator = new VipsBasedOperator(pdocValue);
+		if(threads > 0)
+		{
+			forkJoinPool = new ForkJoinPool(threads);
+			operator.setForkJoinPool(forkJoinPool);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownOperator()
+	{
+		if(forkJoinPool != null)
+			forkJoinPool.shutdown();
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpPage()
+	{
+		root = SyntheticPages.createPage(seed, areaCount);
+	}
+
+	@Benchmark
+	public int apply()
+	{
+		operator.apply(null, root);
+		return operator.getVisualBlocksPool().size();
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * ReconfigureSeparatorsBenchmark.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reconfiguring of the separators of all the nodes of a page in preorder, as the visual block extraction
+ * does it before the division of the children. The separators of all the nodes are detected in advance
+ * and rebound by the reconfiguring, so every invocation gets a fresh page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconfigureSeparatorsBenchmark
+{
+	@Param({ "500", "5000" })
+	public int areaCount;
+
+	@Param({ "42" })
+	public long seed;
+
+	private VipsBasedOperator operator;
+	private VipsBasedRunContext context;
+	private List<AreaImpl> nodes;
+
+	@Setup(Level.Trial)
+	public void setUpOperator()
+	{
+		operator = new VipsBasedOperator(0.6f);
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpPage()
+	{
+		AreaImpl root = SyntheticPages.createPage(seed, areaCount);
+		context = operator.createRunContext(root);
+		context.featureCache.precompute(root);
+		nodes = new ArrayList<AreaImpl>();
+		for (AreaImpl node : SyntheticPages.getAreas(root))
+		{
+			operator.collectActualSeparators(context, node);
+			if(node.getChildCount() != 0)
+				nodes.add(node);
+		}
+	}
+
+	@Benchmark
+	public int reconfigureSeparators()
+	{
+		for (AreaImpl node : nodes)
+			operator.reconfigureSeparators(context, node);
+		return context.detectedSeparators.size();
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * ScalabilityCheck.java
+ */
+package org.fit.vips;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.SyntheticPages.Shape;
+import org.fit.vips.VipsBasedMetrics.Phase;
+
+/**
+ * Checks the growth of the segmentation time with the page size. Synthetic pages of all the shapes
+ * are segmented in growing sizes, and the exponent of the time of every phase is fitted by least squares
+ * on a log-log scale. The check fails, when some phase grows faster than the allowed exponent
+ * or when the segmentation of some page fails.
+ * <p>
+ * Usage: <code>ScalabilityCheck [sizes [max exponent [repetitions]]]</code>, e.g.
+ * <code>ScalabilityCheck 100,1000,10000,100000,1000000 1.2 5</code>.
+ * The exit code is 1 if the check fails.
+ */
+public class ScalabilityCheck
+{
+	private static final String defaultSizes = "100,1000,10000,100000";
+	private static final double defaultMaxExponent = 1.2;
+	private static final int defaultRepetitions = 3;
+
+	/** Times below this limit are dominated by noise and they aren't fitted */
+	private static final long minFittedNanos = 200000;
+
+	private final int[] sizes;
+	private final double maxExponent;
+	private final int repetitions;
+
+	/** Failed segmentations of the actual shape */
+	private int failures = 0;
+
+	public ScalabilityCheck(int[] sizes, double maxExponent, int repetitions)
+	{
+		this.sizes = sizes;
+		this.maxExponent = maxExponent;
+		this.repetitions = repetitions;
+	}
+
+	public static void main(String[] args)
+	{
+		String[] sizeValues = (args.length > 0 ? args[0] : defaultSizes).split(",");
+		int[] sizes = new int[sizeValues.length];
+		for (int i = 0; i < sizes.length; i++)
+			sizes[i] = Integer.parseInt(sizeValues[i].trim());
+		double maxExponent = args.length > 1 ? Double.parseDouble(args[1]) : defaultMaxExponent;
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : defaultRepetitions;
+
+		boolean passed = new ScalabilityCheck(sizes, maxExponent, repetitions).run();
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Runs the check for all the shapes and prints the results
+	 * @return true if all the pages were segmented and no phase of any shape exceeds the maximal exponent
+	 */
+	public boolean run()
+	{
+		warmUp();
+
+		boolean passed = true;
+		for (Shape shape : Shape.values())
+		{
+			System.out.println(shape);
+			failures = 0;
+			Map<Phase, long[]> times = measure(shape);
+			if(failures > 0)
+				passed = false;
+			for (Phase phase : Phase.values())
+			{
+				long[] phaseTimes = times.get(phase);
+				double exponent = fitExponent(phaseTimes);
+				boolean superLinear = !Double.isNaN(exponent) && exponent > maxExponent;
+				System.out.println(String.format("  %-31s exponent %5.2f  %s%s", phase, exponent,
+						formatTimes(phaseTimes), superLinear ? "  SUPER-LINEAR" : ""));
+				if(superLinear)
+					passed = false;
+			}
+		}
+		System.out.println(passed ? "PASSED" : "FAILED, maximal exponent is " + maxExponent);
+		return passed;
+	}
+
+	private void warmUp()
+	{
+		//failures are reported by the measurement itself
+		for (int i = 0; i < 20; i++)
+			segment(SyntheticPages.createPage(i, 2000, Shape.MIXED), null);
+	}
+
+	/**
+	 * Measures the phases for all the sizes
+	 * @return median time of every phase by size in nanoseconds
+	 */
+	private Map<Phase, long[]> measure(Shape shape)
+	{
+		final Map<Phase, long[][]> samples = new EnumMap<Phase, long[][]>(Phase.class);
+		for (Phase phase : Phase.values())
+			samples.put(phase, new long[sizes.length][repetitions]);
+
+		for (int i = 0; i < sizes.length; i++)
+		{
+			final int sizeIndex = i;
+			for (int j = 0; j < repetitions; j++)
+			{
+				final int repetition = j;
+				AreaImpl root = SyntheticPages.createPage(j, sizes[i], shape);
+				Throwable failure = segment(root, new VipsBasedListener() {
+					@Override
+					public void segmentationFinished(AreaImpl page, VipsBasedMetrics metrics)
+					{
+						for (Phase phase : Phase.values())
+							samples.get(phase)[sizeIndex][repetition] = metrics.getPhaseNanos(phase);
+					}
+				});
+				if(failure != null)
+				{
+					failures++;
+					System.out.println("  size " + sizes[i] + ", page " + j + " failed: " + failure);
+				}
+			}
+		}
+
+		Map<Phase, long[]> result = new EnumMap<Phase, long[]>(Phase.class);
+		for (Phase phase : Phase.values())
+		{
+			long[] medians = new long[sizes.length];
+			for (int i = 0; i < sizes.length; i++)
+			{
+				long[] sizeSamples = samples.get(phase)[i];
+				Arrays.sort(sizeSamples);
+				medians[i] = sizeSamples[sizeSamples.length / 2];
+			}
+			result.put(phase, medians);
+		}
+		return result;
+	}
+
+	/**
+	 * Segments a page by a new operator
+	 * @return exception thrown by the segmentation or null if the page was segmented
+	 */
+	private Throwable segment(AreaImpl root, VipsBasedListener listener)
+	{
+		VipsBasedOperator operator = new VipsBasedOperator(0.6f);
+		operator.setListener(listener);
+		try
+		{
+			operator.apply(null, root);
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return e;
+		}
+		catch (StackOverflowError e)
+		{
+			//too deep area tree
+			return e;
+		}
+	}
+
+	/**
+	 * Fits time = c * size^exponent by least squares on the logarithms
+	 * @param times times by size
+	 * @return fitted exponent, NaN if there are less than two measurable times
+	 */
+	private double fitExponent(long[] times)
+	{
+		int count = 0;
+		double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+		for (int i = 0; i < sizes.length; i++)
+		{
+			if(times[i] < minFittedNanos)
+				continue;
+			double x = Math.log(sizes[i]);
+			double y = Math.log(times[i]);
+			count++;
+			sumX += x;
+			sumY += y;
+			sumXX += x * x;
+			sumXY += x * y;
+		}
+		if(count < 2)
+			return Double.NaN;
+		return (count * sumXY - sumX * sumY) / (count * sumXX - sumX * sumX);
+	}
+
+	private String formatTimes(long[] times)
+	{
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < sizes.length; i++)
+			result.append(String.format("  %d: %.2f ms", sizes[i], times[i] / 1e6));
+		return result.toString();
+	}
+}
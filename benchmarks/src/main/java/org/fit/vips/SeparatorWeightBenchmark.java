@@ -0,0 +1,79 @@
+/**
+ * SeparatorWeightBenchmark.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Weights of the separators detected during the visual block extraction of a page
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeparatorWeightBenchmark
+{
+	@Param({ "500", "5000" })
+	public int areaCount;
+
+	@Param({ "42" })
+	public long seed;
+
+	private List<VipsBasedSeparator> separators;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		VipsBasedOperator operator = new VipsBasedOperator(0.6f);
+		AreaImpl root = SyntheticPages.createPage(seed, areaCount);
+		VipsBasedRunContext context = operator.createRunContext(root);
+		operator.extractVisualBlocks(context, root);
+		separators = new ArrayList<VipsBasedSeparator>(context.detectedSeparators);
+	}
+
+	/**
+	 * Weights computed again for every separator
+	 */
+	@Benchmark
+	public long computeWeights()
+	{
+		long sum = 0;
+		for (VipsBasedSeparator separator : separators)
+		{
+			separator.invalidateWeight();
+			sum += separator.getWeight();
+		}
+		return sum;
+	}
+
+	/**
+	 * Weights read from the cache of the separators
+	 */
+	@Benchmark
+	public long cachedWeights()
+	{
+		long sum = 0;
+		for (VipsBasedSeparator separator : separators)
+			sum += separator.getWeight();
+		return sum;
+	}
+}
@@ -0,0 +1,269 @@
+/**
+ * SubtreeCacheEquivalenceCheck.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Checks that the segmentation with a subtree cache gives the same results as the segmentation without it
+ * and measures the time saved by the cache. Pages of synthetic sites, which share the header and the footer,
+ * are segmented without the cache and by the operators of several configurations: with a cache big enough
+ * for all the divisions, with a small cache evicting the divisions all the time and with a cache and
+ * a fork/join pool. The output area tree, the visual blocks with their degrees of coherence and the detected
+ * separators of every page are compared with the segmentation without the cache.
+ * The template profiles are checked the same way, every site is segmented with its own profile.
+ * <p>
+ * The times include the computation of the fingerprints and they are measured on the pages in the order
+ * of the sites, so they are indicative only.
+ * <p>
+ * Usage: <code>SubtreeCacheEquivalenceCheck [sites [pages [area count]]]</code>, e.g.
+ * <code>SubtreeCacheEquivalenceCheck 60 16 600</code>.
+ * The exit code is 1 if some result differs.
+ */
+public class SubtreeCacheEquivalenceCheck
+{
+	private static final int defaultSites = 60;
+	private static final int defaultPages = 16;
+	private static final int defaultAreaCount = 600;
+
+	private static final float permittedDoc = 0.6f;
+	/** Maximal size of the small cache, it holds the divisions of a few subtrees only */
+	private static final int smallCacheSize = 200;
+	/** Size of the subtrees divided in the tasks of the pool, small enough to fork on every page */
+	private static final int forkSubtreeSize = 16;
+	/** Number of the pages of a site the template is learned from */
+	private static final int learningPages = 4;
+
+	private final int sites;
+	private final int pages;
+	private final int areaCount;
+
+	private ForkJoinPool pool;
+	private final List<Configuration> configurations = new ArrayList<Configuration>();
+	/** Time of the segmentations without the cache in nanoseconds */
+	private long uncachedNanos = 0;
+
+	/**
+	 * Operators of one configuration and the results of their segmentations
+	 */
+	private abstract class Configuration
+	{
+		final String name;
+		int same = 0;
+		int different = 0;
+		/** Segmentations failing both with and without the cache */
+		int failed = 0;
+		long nanos = 0;
+
+		Configuration(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * @return operator for the pages of a site
+		 */
+		abstract VipsBasedOperator createOperator(int site);
+
+		abstract VipsBasedSubtreeCache getCache();
+	}
+
+	/**
+	 * Configuration with one cache shared by all the sites
+	 */
+	private class CachedConfiguration extends Configuration
+	{
+		private final VipsBasedSubtreeCache cache;
+		private final boolean forked;
+
+		CachedConfiguration(String name, int cacheSize, boolean forked)
+		{
+			super(name);
+			this.cache = new VipsBasedSubtreeCache(cacheSize);
+			this.forked = forked;
+		}
+
+		@Override
+		VipsBasedOperator createOperator(int site)
+		{
+			VipsBasedOperator operator = new VipsBasedOperator(permittedDoc);
+			operator.setSubtreeCache(cache);
+			if(forked)
+			{
+				operator.setForkJoinPool(pool);
+				operator.setForkSubtreeSize(forkSubtreeSize);
+			}
+			return operator;
+		}
+
+		@Override
+		VipsBasedSubtreeCache getCache()
+		{
+			return cache;
+		}
+	}
+
+	/**
+	 * Configuration with a new template profile for every site
+	 */
+	private class TemplateConfiguration extends Configuration
+	{
+		/** Cache of the template profiles of all the sites */
+		private final VipsBasedSubtreeCache cache = new VipsBasedSubtreeCache();
+		private long matchCount = 0;
+		private long deviationCount = 0;
+		private VipsBasedTemplateProfile profile = null;
+
+		TemplateConfiguration(String name)
+		{
+			super(name);
+		}
+
+		@Override
+		VipsBasedOperator createOperator(int site)
+		{
+			addCounts();
+			profile = new VipsBasedTemplateProfile(learningPages, cache);
+			VipsBasedOperator operator = new VipsBasedOperator(permittedDoc);
+			operator.setTemplateProfile(profile);
+			return operator;
+		}
+
+		@Override
+		VipsBasedSubtreeCache getCache()
+		{
+			return cache;
+		}
+
+		/**
+		 * Adds the counts of the profile of the last site
+		 */
+		void addCounts()
+		{
+			if(profile != null)
+			{
+				matchCount += profile.getMatchCount();
+				deviationCount += profile.getDeviationCount();
+				profile = null;
+			}
+		}
+	}
+
+	public SubtreeCacheEquivalenceCheck(int sites, int pages, int areaCount)
+	{
+		this.sites = sites;
+		this.pages = pages;
+		this.areaCount = areaCount;
+	}
+
+	public static void main(String[] args)
+	{
+		int sites = args.length > 0 ? Integer.parseInt(args[0]) : defaultSites;
+		int pages = args.length > 1 ? Integer.parseInt(args[1]) : defaultPages;
+		int areaCount = args.length > 2 ? Integer.parseInt(args[2]) : defaultAreaCount;
+
+		boolean passed = new SubtreeCacheEquivalenceCheck(sites, pages, areaCount).run();
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Runs the check for all the configurations and prints the results
+	 * @return true if all the configurations gave the results of the segmentations without the cache
+	 */
+	public boolean run()
+	{
+		pool = new ForkJoinPool(4);
+		configurations.clear();
+		configurations.add(new CachedConfiguration("cache", VipsBasedSubtreeCache.defaultMaxSize, false));
+		configurations.add(new CachedConfiguration("small cache", smallCacheSize, false));
+		configurations.add(new CachedConfiguration("cache and pool", VipsBasedSubtreeCache.defaultMaxSize, true));
+		TemplateConfiguration template = new TemplateConfiguration("template");
+		configurations.add(template);
+		try
+		{
+			for (int site = 0; site < sites; site++)
+				checkSite(site);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		template.addCounts();
+
+		boolean passed = true;
+		System.out.println(String.format("%-16s time %8.1f ms", "no cache", uncachedNanos / 1e6));
+		for (Configuration configuration : configurations)
+		{
+			VipsBasedSubtreeCache cache = configuration.getCache();
+			System.out.println(String.format("%-16s time %8.1f ms  same %d, different %d, failed %d, hits %d, misses %d, cached divisions %d",
+					configuration.name, configuration.nanos / 1e6, configuration.same, configuration.different, configuration.failed,
+					cache.getHitCount(), cache.getMissCount(), cache.getDivisionCount()));
+			if(configuration.different > 0)
+				passed = false;
+		}
+		System.out.println(String.format("template subtrees matched %d, deviated %d", template.matchCount, template.deviationCount));
+		System.out.println(passed ? "PASSED" : "FAILED");
+		return passed;
+	}
+
+	private void checkSite(int site)
+	{
+		List<VipsBasedOperator> operators = new ArrayList<VipsBasedOperator>();
+		for (Configuration configuration : configurations)
+			operators.add(configuration.createOperator(site));
+
+		for (int page = 0; page < pages; page++)
+		{
+			AreaImpl root = SyntheticPages.createSitePage(site, page, areaCount);
+			long start = System.nanoTime();
+			String expected = segment(new VipsBasedOperator(permittedDoc), root);
+			uncachedNanos += System.nanoTime() - start;
+
+			for (int i = 0; i < configurations.size(); i++)
+			{
+				Configuration configuration = configurations.get(i);
+				root = SyntheticPages.createSitePage(site, page, areaCount);
+				start = System.nanoTime();
+				String actual = segment(operators.get(i), root);
+				configuration.nanos += System.nanoTime() - start;
+
+				if(!expected.equals(actual))
+				{
+					configuration.different++;
+					System.out.println(String.format("  %s, site %d, page %d differs: %s", configuration.name, site, page,
+							IncrementalEquivalenceCheck.firstDifference(expected, actual)));
+				}
+				else if(expected.startsWith("failure "))
+					configuration.failed++;
+				else
+					configuration.same++;
+			}
+		}
+	}
+
+	/**
+	 * Segments a page
+	 * @return description of the result or of the failure
+	 */
+	private String segment(VipsBasedOperator operator, AreaImpl root)
+	{
+		try
+		{
+			operator.apply(null, root);
+			return IncrementalEquivalenceCheck.describe(root, operator.getVisualBlocksPool(), operator.getDetectedSeparators());
+		}
+		catch (RuntimeException e)
+		{
+			return "failure " + e.getClass().getName();
+		}
+		catch (StackOverflowError e)
+		{
+			return "failure " + e.getClass().getName();
+		}
+	}
+}
@@ -0,0 +1,438 @@
+/**
+ * SyntheticPages.java
+ */
+package org.fit.vips;
+
+import java.awt.Color;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.fit.layout.model.Rectangular;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Generator of reproducible synthetic area trees for the benchmarks. A page consists of stacked sections
+ * (articles with paragraphs of inline text, lists, tables and nested columns), so all the heuristic rules
+ * and the separator detection have work to do. Other shapes stress a single kind of structure.
+ * The same seed, size and shape always give the same page.
+ * <p>
+ * The boxes of the areas are dynamic proxies of {@link Box}, which answer the style and content methods
+ * and return default values for everything else.
+ */
+public class SyntheticPages
+{
+	public static final int pageWidth = 1200;
+
+	/**
+	 * Shapes of the generated pages
+	 */
+	public enum Shape
+	{
+		/** Mixture of articles, lists, tables and nested columns */
+		MIXED,
+		/** Chains of deeply nested blocks */
+		DEEP,
+		/** One wide flat list */
+		FLAT_LIST,
+		/** One big table with coloured columns */
+		TABLE,
+		/** Paragraphs with long runs of inline text */
+		INLINE_TEXT
+	}
+
+	/** Depth of the chains of nested blocks of the DEEP shape */
+	private static final int nestingDepth = 48;
+
+	private static final int lineHeight = 18;
+	private static final float[] fontSizes = { 12f, 13f, 14f, 16f };
+	private static final Color[] backgrounds = { null, Color.WHITE, new Color(0xeeeeee), new Color(0xffffcc), new Color(0x336699) };
+	private static final String[] inlineTags = { "a", "b", "span", "em", "img" };
+
+	private final Random random;
+	private final Shape shape;
+	/** Number of areas, which may still be created */
+	private int budget;
+
+	private SyntheticPages(long seed, int areaCount, Shape shape)
+	{
+		this.random = new Random(seed);
+		this.shape = shape;
+		this.budget = areaCount;
+	}
+
+	/**
+	 * Creates a synthetic page
+	 * @param seed seed of the page
+	 * @param areaCount approximate number of the areas of the page
+	 * @return root area of the page
+	 */
+	public static AreaImpl createPage(long seed, int areaCount)
+	{
+		return createPage(seed, areaCount, Shape.MIXED);
+	}
+
+	/**
+	 * Creates a synthetic page of given shape
+	 * @param seed seed of the page
+	 * @param areaCount approximate number of the areas of the page
+	 * @param shape shape of the page
+	 * @return root area of the page
+	 */
+	public static AreaImpl createPage(long seed, int areaCount, Shape shape)
+	{
+		return new SyntheticPages(seed, areaCount, shape).createBody();
+	}
+
+	/**
+	 * Creates a page of a synthetic site. All the pages of a site share the header and the footer,
+	 * the main content between them differs from page to page.
+	 * @param site seed of the site
+	 * @param page seed of the page within the site
+	 * @param areaCount approximate number of the areas of the page
+	 * @return root area of the page
+	 */
+	public static AreaImpl createSitePage(long site, long page, int areaCount)
+	{
+		SyntheticPages header = new SyntheticPages(2 * site, areaCount / 4, Shape.MIXED);
+		SyntheticPages content = new SyntheticPages(1000003L * site + page, areaCount / 2, Shape.MIXED);
+		SyntheticPages footer = new SyntheticPages(2 * site + 1, areaCount / 4, Shape.MIXED);
+
+		List<AreaImpl> parts = new ArrayList<AreaImpl>();
+		parts.add(header.createStack(0));
+		parts.add(content.createStack(parts.get(0).getY2() + 11));
+		parts.add(footer.createStack(parts.get(1).getY2() + 11));
+		return footer.createElement("body", 0, 0, pageWidth, parts.get(2).getY2() + 1, Color.WHITE, 14f, parts);
+	}
+
+	/**
+	 * @return all areas of the subtree in preorder
+	 */
+	public static List<AreaImpl> getAreas(AreaImpl root)
+	{
+		List<AreaImpl> result = new ArrayList<AreaImpl>();
+		collectAreas(root, result);
+		return result;
+	}
+
+	private static void collectAreas(AreaImpl root, List<AreaImpl> result)
+	{
+		result.add(root);
+		for (Area child : root.getChildAreas())
+			collectAreas((AreaImpl) child, result);
+	}
+
+	private AreaImpl createBody()
+	{
+		List<AreaImpl> sections = new ArrayList<AreaImpl>();
+		int y = 0;
+
+		budget--;
+		while (budget > 0)
+		{
+			AreaImpl section;
+			if(shape == Shape.DEEP)
+				section = createNested(0, y, pageWidth, nestingDepth);
+			else if(shape == Shape.FLAT_LIST)
+				section = createList(0, y, pageWidth, budget / 3 + 1);
+			else if(shape == Shape.TABLE)
+				section = createTable(0, y, pageWidth, 8, budget / 18 + 1, true);
+			else if(shape == Shape.INLINE_TEXT)
+				section = createParagraph(0, y, pageWidth, 400);
+			else
+				section = createSection(0, y, pageWidth, 0);
+			sections.add(section);
+			y = section.getY2() + 1 + random.nextInt(16);
+		}
+		return createElement("body", 0, 0, pageWidth, Math.max(y, 1), Color.WHITE, 14f, sections);
+	}
+
+	/**
+	 * Sections stacked below each other in a block, which uses the whole budget
+	 */
+	private AreaImpl createStack(int y)
+	{
+		List<AreaImpl> sections = new ArrayList<AreaImpl>();
+		int cy = y;
+
+		budget--;
+		while (budget > 0)
+		{
+			AreaImpl section = createSection(0, cy, pageWidth, 0);
+			sections.add(section);
+			cy = section.getY2() + 1 + random.nextInt(16);
+		}
+		return createElement("div", 0, y, pageWidth, Math.max(cy - y, 1), null, 14f, sections);
+	}
+
+	private AreaImpl createSection(int x, int y, int width, int depth)
+	{
+		int kind = random.nextInt(depth < 2 && width > 300 ? 4 : 3);
+		if(kind == 0)
+			return createArticle(x, y, width);
+		else if(kind == 1)
+			return createList(x, y, width, 2 + random.nextInt(8));
+		else if(kind == 2)
+			return createTable(x, y, width, 1 + random.nextInt(5), 1 + random.nextInt(6), false);
+		else
+			return createColumns(x, y, width, depth);
+	}
+
+	/**
+	 * Heading followed by paragraphs
+	 */
+	private AreaImpl createArticle(int x, int y, int width)
+	{
+		List<AreaImpl> children = new ArrayList<AreaImpl>();
+		int cy = y;
+
+		AreaImpl heading = createInline("h2", x, cy, Math.min(width, 200 + random.nextInt(400)), 26, 20f);
+		children.add(heading);
+		cy = heading.getY2() + 8;
+
+		int paragraphs = 1 + random.nextInt(4);
+		for (int i = 0; i < paragraphs && budget > 0; i++)
+		{
+			AreaImpl paragraph = createParagraph(x, cy, width, 8);
+			children.add(paragraph);
+			cy = paragraph.getY2() + 1 + random.nextInt(10);
+		}
+		return createElement("div", x, y, width, cy - y, randomBackground(), 14f, children);
+	}
+
+	/**
+	 * Inline runs wrapped to lines
+	 */
+	/**
+	 * @param maxRuns maximal number of the inline runs
+	 */
+	private AreaImpl createParagraph(int x, int y, int width, int maxRuns)
+	{
+		List<AreaImpl> children = new ArrayList<AreaImpl>();
+		float fontSize = fontSizes[random.nextInt(fontSizes.length)];
+		int runs = 1 + random.nextInt(maxRuns);
+		int cx = x;
+		int cy = y;
+
+		for (int i = 0; i < runs && budget > 0; i++)
+		{
+			int runWidth = Math.min(width, 30 + random.nextInt(200));
+			if(cx + runWidth > x + width)
+			{
+				cx = x;
+				cy += lineHeight;
+			}
+			String tag = inlineTags[random.nextInt(inlineTags.length)];
+			if(tag.equals("img"))
+				children.add(createImage(cx, cy, runWidth, lineHeight));
+			else if(random.nextInt(3) == 0)
+				children.add(createText(cx, cy, runWidth, lineHeight, fontSize));
+			else
+				children.add(createInline(tag, cx, cy, runWidth, lineHeight, fontSize));
+			cx += runWidth + 4;
+		}
+		return createElement("p", x, y, width, cy + lineHeight - y, null, fontSize, children);
+	}
+
+	private AreaImpl createList(int x, int y, int width, int itemCount)
+	{
+		List<AreaImpl> items = new ArrayList<AreaImpl>();
+		int cy = y;
+
+		for (int i = 0; i < itemCount && budget > 0; i++)
+		{
+			AreaImpl link = createInline("a", x + 20, cy, Math.min(width - 20, 60 + random.nextInt(200)), lineHeight, 13f);
+			items.add(createElement("li", x + 20, cy, width - 20, lineHeight, null, 13f, Collections.singletonList(link)));
+			cy += lineHeight + 2;
+		}
+		return createElement("ul", x, y, width, cy - y, randomBackground(), 13f, items);
+	}
+
+	/**
+	 * @param colouredColumns true if every column should have its own background, false for striped rows
+	 */
+	private AreaImpl createTable(int x, int y, int width, int columns, int rowCount, boolean colouredColumns)
+	{
+		List<AreaImpl> rows = new ArrayList<AreaImpl>();
+		int cellWidth = Math.max(8, width / columns - 2);
+		Color[] columnBackgrounds = new Color[columns];
+		if(colouredColumns)
+		{
+			for (int j = 0; j < columns; j++)
+				columnBackgrounds[j] = new Color(0x808080 + random.nextInt(0x7f7f7f));
+		}
+		int cy = y;
+
+		for (int i = 0; i < rowCount && budget > 0; i++)
+		{
+			List<AreaImpl> cells = new ArrayList<AreaImpl>();
+			Color rowBackground = (i % 2 == 0) ? null : new Color(0xf4f4f4);
+			for (int j = 0; j < columns; j++)
+			{
+				int cx = x + j * (cellWidth + 2);
+				List<AreaImpl> content = new ArrayList<AreaImpl>();
+				if(random.nextInt(4) != 0)
+					content.add(createText(cx + 1, cy + 1, cellWidth - 2, lineHeight, 13f));
+				Color cellBackground = colouredColumns ? columnBackgrounds[j] : rowBackground;
+				cells.add(createElement("td", cx, cy, cellWidth, lineHeight + 2, cellBackground, 13f, content));
+			}
+			rows.add(createElement("tr", x, cy, columns * (cellWidth + 2), lineHeight + 2, rowBackground, 13f, cells));
+			cy += lineHeight + 3;
+		}
+		return createElement("table", x, y, width, cy - y, randomBackground(), 13f, rows);
+	}
+
+	/**
+	 * Side by side sections, like navigation, main column and sidebar
+	 */
+	private AreaImpl createColumns(int x, int y, int width, int depth)
+	{
+		List<AreaImpl> columns = new ArrayList<AreaImpl>();
+		int count = 2 + random.nextInt(2);
+		int columnWidth = width / count - 10;
+		int height = 0;
+
+		for (int i = 0; i < count && budget > 0; i++)
+		{
+			int cx = x + i * (columnWidth + 10);
+			List<AreaImpl> sections = new ArrayList<AreaImpl>();
+			int cy = y;
+			int sectionCount = 1 + random.nextInt(3);
+			for (int j = 0; j < sectionCount && budget > 0; j++)
+			{
+				AreaImpl section = createSection(cx, cy, columnWidth, depth + 1);
+				sections.add(section);
+				cy = section.getY2() + 1 + random.nextInt(8);
+			}
+			columns.add(createElement("div", cx, y, columnWidth, Math.max(cy - y, 1), randomBackground(), 14f, sections));
+			height = Math.max(height, cy - y);
+		}
+		return createElement("div", x, y, width, Math.max(height, 1), null, 14f, columns);
+	}
+
+	/**
+	 * Chain of nested blocks with a paragraph at the bottom
+	 * @param depth number of the nested blocks
+	 */
+	private AreaImpl createNested(int x, int y, int width, int depth)
+	{
+		AreaImpl content;
+		if(depth == 0 || budget <= 0)
+			content = createParagraph(x, y, width, 4);
+		else
+			content = createNested(x + 1, y + 1, width - 2, depth - 1);
+		return createElement("div", x, y, width, content.getY2() + 2 - y, randomBackground(), 14f, Collections.singletonList(content));
+	}
+
+	private AreaImpl createInline(String tag, int x, int y, int width, int height, float fontSize)
+	{
+		AreaImpl text = createText(x, y, width, height, fontSize);
+		return createElement(tag, x, y, width, height, null, fontSize, Collections.singletonList(text));
+	}
+
+	private AreaImpl createText(int x, int y, int width, int height, float fontSize)
+	{
+		budget--;
+		AreaImpl area = new AreaImpl(x, y, x + width - 1, y + height - 1);
+		area.addBox(createBox(null, Box.Type.TEXT_CONTENT, random.nextInt(30) != 0, "synthetic text",
+				fontSize, random.nextInt(4) == 0 ? 700f : 400f, null, area.getBounds()));
+		return area;
+	}
+
+	private AreaImpl createImage(int x, int y, int width, int height)
+	{
+		budget--;
+		AreaImpl area = new AreaImpl(x, y, x + width - 1, y + height - 1);
+		area.addBox(createBox("img", Box.Type.REPLACED_CONTENT, true, "", 0f, 400f, null, area.getBounds()));
+		return area;
+	}
+
+	private AreaImpl createElement(String tag, int x, int y, int width, int height, Color background, float fontSize, List<AreaImpl> children)
+	{
+		budget--;
+		AreaImpl area = new AreaImpl(x, y, x + width - 1, y + height - 1);
+		area.addBox(createBox(tag, Box.Type.ELEMENT, random.nextInt(40) != 0, "", fontSize, 400f, background, area.getBounds()));
+		for (AreaImpl child : children)
+			area.appendChild(child);
+		return area;
+	}
+
+	private Color randomBackground()
+	{
+		return backgrounds[random.nextInt(backgrounds.length)];
+	}
+
+	private static Box createBox(final String tagName, final Box.Type type, final boolean visible, final String text,
+			final float fontSize, final float fontWeight, final Color background, Rectangular areaBounds)
+	{
+		final Rectangular bounds = new Rectangular(areaBounds.getX1(), areaBounds.getY1(), areaBounds.getX2(), areaBounds.getY2());
+
+		InvocationHandler handler = new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String name = method.getName();
+				Class<?> returnType = method.getReturnType();
+
+				if(name.equals("equals"))
+					return proxy == args[0];
+				else if(name.equals("hashCode"))
+					return System.identityHashCode(proxy);
+				else if(name.equals("toString"))
+					return "SyntheticBox<" + tagName + ">";
+				else if(name.equals("getTagName"))
+					return tagName;
+				else if(name.equals("getType"))
+					return type;
+				else if(name.equals("isVisible"))
+					return visible;
+				else if(name.equals("getText") && returnType == String.class)
+					return text;
+				else if(name.equals("getFontSize"))
+					return number(returnType, fontSize);
+				else if(name.equals("getFontWeight"))
+					return number(returnType, fontWeight);
+				else if(name.equals("getBackgroundColor"))
+					return background;
+				else if(name.equals("getColor"))
+					return Color.BLACK;
+				else if(returnType == Rectangular.class)
+					return bounds;
+				else
+					return number(returnType, 0);
+			}
+		};
+		return (Box) Proxy.newProxyInstance(Box.class.getClassLoader(), new Class<?>[] { Box.class }, handler);
+	}
+
+	/**
+	 * @return the value of the required primitive type, null for the reference types
+	 */
+	private static Object number(Class<?> type, float value)
+	{
+		if(type == float.class)
+			return value;
+		else if(type == int.class)
+			return (int) value;
+		else if(type == double.class)
+			return (double) value;
+		else if(type == long.class)
+			return (long) value;
+		else if(type == short.class)
+			return (short) value;
+		else if(type == byte.class)
+			return (byte) value;
+		else if(type == boolean.class)
+			return value != 0;
+		else if(type == char.class)
+			return (char) value;
+		else
+			return null;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * VipsBasedAreaFeatureCache.java
+ */
+package org.fit.vips;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.VipsBasedTagClassifier.TagCategory;
+
+/**
+ * Features of the areas of one segmentation run, kept by the area identity.
+ * Every change of the child areas of an area has to be reported by {@link #invalidate(AreaImpl)}.
+ * <p>
+ * A cache may be derived from a parent cache for a branch of the run divided in another thread.
+ * The branch reuses complete records of its parent and keeps the new ones and the invalidations
+ * for itself, the parent must not be changed until the invalidations are merged back by {@link #mergeInvalidations()}.
+ */
+public class VipsBasedAreaFeatureCache
+{
+	private final Map<AreaImpl, VipsBasedAreaFeatures> features = new IdentityHashMap<AreaImpl, VipsBasedAreaFeatures>();
+	private final VipsBasedTagClassifier tagClassifier;
+
+	/** Cache of the parent branch, null for the cache of a whole run */
+	private final VipsBasedAreaFeatureCache parent;
+	/** Areas, whose records in the parent cache are no more valid */
+	private final Set<AreaImpl> invalidated;
+	private int invalidationCount = 0;
+
+	/**
+	 * @param tagClassifier classifier used for the tag categories of the areas
+	 */
+	public VipsBasedAreaFeatureCache(VipsBasedTagClassifier tagClassifier)
+	{
+		this(tagClassifier, null);
+	}
+
+	/**
+	 * @param tagClassifier classifier used for the tag categories of the areas
+	 * @param parent cache of the parent branch
+	 */
+	public VipsBasedAreaFeatureCache(VipsBasedTagClassifier tagClassifier, VipsBasedAreaFeatureCache parent)
+	{
+		this.tagClassifier = tagClassifier;
+		this.parent = parent;
+		if(parent != null)
+			this.invalidated = Collections.newSetFromMap(new IdentityHashMap<AreaImpl, Boolean>());
+		else
+			this.invalidated = null;
+	}
+
+	/**
+	 * Returns features of given area, the record is created when it is requested for the first time
+	 * @param area described area
+	 * @return features of the area
+	 */
+	public VipsBasedAreaFeatures get(AreaImpl area)
+	{
+		VipsBasedAreaFeatures areaFeatures = features.get(area);
+		if(areaFeatures == null && parent != null && !invalidated.contains(area))
+		{
+			//incomplete records would compute the missing features into the parent cache
+			areaFeatures = parent.lookup(area);
+			if(areaFeatures != null && !areaFeatures.isComplete())
+				areaFeatures = null;
+		}
+		if(areaFeatures == null)
+		{
+			areaFeatures = new VipsBasedAreaFeatures(area, this);
+			features.put(area, areaFeatures);
+		}
+		return areaFeatures;
+	}
+
+	/**
+	 * Computes features of all the areas of given subtree, the child areas first
+	 * @param root root of the subtree
+	 */
+	public void precompute(AreaImpl root)
+	{
+		precomputeSubtree(root);
+	}
+
+	/**
+	 * Forgets features of given area and of its parent, which depend on the child areas of the area
+	 * @param area area, whose child areas were changed
+	 */
+	public void invalidate(AreaImpl area)
+	{
+		invalidationCount++;
+		forget(area);
+		if(area.getParentArea() != null)
+			forget(area.getParentArea());
+	}
+
+	/**
+	 * Forgets the records in the parent cache invalidated in this cache
+	 */
+	public void mergeInvalidations()
+	{
+		if(parent == null)
+			return;
+
+		for (AreaImpl area : invalidated)
+			parent.forget(area);
+		parent.invalidationCount += invalidated.size();
+		invalidated.clear();
+	}
+
+	/**
+	 * @return number of the invalidations in this cache and in the merged branches, a change of the number means a change of the area tree
+	 */
+	public int getInvalidationCount()
+	{
+		return invalidationCount;
+	}
+
+	public void clear()
+	{
+		features.clear();
+		if(invalidated != null)
+			invalidated.clear();
+	}
+
+	private void forget(AreaImpl area)
+	{
+		features.remove(area);
+		if(parent != null)
+			invalidated.add(area);
+	}
+
+	/**
+	 * Finds a record in this cache or in the parent caches without creating it
+	 */
+	private VipsBasedAreaFeatures lookup(AreaImpl area)
+	{
+		VipsBasedAreaFeatures areaFeatures = features.get(area);
+		if(areaFeatures == null && parent != null && !invalidated.contains(area))
+			return parent.lookup(area);
+		else
+			return areaFeatures;
+	}
+
+	TagCategory classify(Box box)
+	{
+		return tagClassifier.classify(box);
+	}
+
+	/**
+	 * @return true if all the areas of the subtree have a box
+	 */
+	private boolean precomputeSubtree(AreaImpl root)
+	{
+		boolean boxed = root.getBoxes().size() != 0;
+		for (Area child : root.getChildAreas())
+		{
+			if(!precomputeSubtree((AreaImpl)child))
+				boxed = false;
+		}
+
+		//flags depending on an area without boxes are computed only when a rule asks for them
+		VipsBasedAreaFeatures rootFeatures = get(root);
+		if(boxed)
+			rootFeatures.computeAll();
+		return boxed;
+	}
+}
@@ -0,0 +1,402 @@
+/**
+ * VipsBasedAreaFeatures.java
+ */
+package org.fit.vips;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.VipsBasedTagClassifier.TagCategory;
+
+/**
+ * Features of an area used by the heuristic rules and by the separator weights.
+ * Style attributes are read when the record is created, structural flags are computed
+ * on the first request from the records of the child areas. The record is valid only until
+ * the child areas of its area are changed.
+ */
+public class VipsBasedAreaFeatures
+{
+	private final AreaImpl area;
+	private final VipsBasedAreaFeatureCache cache;
+
+	private final float fontSize;
+	private final float fontWeight;
+	private final float fontStyle;
+	private final float underline;
+	private final float lineThrough;
+	private final Color backgroundColor;
+	/** Type of the first box, null if the area has no box */
+	private final Box.Type firstBoxType;
+
+	private TagCategory tagCategory = null;
+	private Boolean textNode = null;
+	private Boolean visible = null;
+	private Boolean valid = null;
+	private Boolean textChildren = null;
+	private Boolean virtualTextNode = null;
+	private int maxSizeChild = -1;
+	private int subtreeSize = -1;
+
+	/** Facts about the child areas gathered by one scan, valid only if childrenScanned is set */
+	private boolean childrenScanned = false;
+	private boolean lineBreakChild;
+	private int firstTaggedLineBreakChild;
+	private boolean textChild;
+	private int leadingTextChildren;
+	private boolean fontSizeChanged;
+	private boolean fontWeightChanged;
+
+	/**
+	 * Creates features of given area
+	 * @param area described area
+	 * @param cache cache of the records of other areas, null if the records shouldn't be cached
+	 */
+	public VipsBasedAreaFeatures(AreaImpl area, VipsBasedAreaFeatureCache cache)
+	{
+		this.area = area;
+		this.cache = cache;
+		this.fontSize = area.getFontSize();
+		this.fontWeight = area.getFontWeight();
+		this.fontStyle = area.getFontStyle();
+		this.underline = area.getUnderline();
+		this.lineThrough = area.getLineThrough();
+		this.backgroundColor = area.getBackgroundColor();
+		if(area.getBoxes().size() != 0)
+			this.firstBoxType = area.getBoxes().get(0).getType();
+		else
+			this.firstBoxType = null;
+	}
+
+	public AreaImpl getArea()
+	{
+		return area;
+	}
+
+	public float getFontSize()
+	{
+		return fontSize;
+	}
+
+	public float getFontWeight()
+	{
+		return fontWeight;
+	}
+
+	public float getFontStyle()
+	{
+		return fontStyle;
+	}
+
+	public float getUnderline()
+	{
+		return underline;
+	}
+
+	public float getLineThrough()
+	{
+		return lineThrough;
+	}
+
+	public Color getBackgroundColor()
+	{
+		return backgroundColor;
+	}
+
+	public Box.Type getFirstBoxType()
+	{
+		return firstBoxType;
+	}
+
+	/**
+	 * @return category of the tag of the first box, NONE if the area has no box
+	 */
+	public TagCategory getTagCategory()
+	{
+		if(tagCategory == null)
+		{
+			if(area.getBoxes().size() == 0)
+				tagCategory = TagCategory.NONE;
+			else if(cache != null)
+				tagCategory = cache.classify(area.getBoxes().get(0));
+			else
+				tagCategory = VipsBasedTagClassifier.classify(area.getBoxes().get(0).getTagName());
+		}
+		return tagCategory;
+	}
+
+	/**
+	 * @return true if the area is a text node with some text
+	 */
+	public boolean isTextNode()
+	{
+		if(textNode == null)
+		{
+			Box box = area.getBoxes().get(0);
+			if(box.getType() == Box.Type.TEXT_CONTENT)
+				textNode = !(area.getText().trim().isEmpty() || Float.compare(area.getFontSize(), 0.0f) == 0);
+			else
+				textNode = false;
+		}
+		return textNode;
+	}
+
+	/**
+	 * @return true if the first box of the area is visible
+	 */
+	public boolean isVisible()
+	{
+		if(visible == null)
+			visible = area.getBoxes().get(0).isVisible();
+		return visible;
+	}
+
+	/**
+	 * @return false if the area is not visible and it has no visible child (VIPS rule 1), true otherwise
+	 */
+	public boolean isValid()
+	{
+		if(valid == null)
+		{
+			boolean validChild = false;
+			if(!isVisible())
+			{
+				for (Area child : area.getChildAreas())
+				{
+					if(getFeatures(child).isVisible())
+					{
+						validChild = true;
+						break;
+					}
+				}
+				valid = validChild;
+			}
+			else
+				valid = true;
+		}
+		return valid;
+	}
+
+	/**
+	 * @return true if all the child areas are text nodes (also if there is no child area)
+	 */
+	public boolean hasTextChildren()
+	{
+		if(textChildren == null)
+		{
+			boolean allText = true;
+			for (Area child : area.getChildAreas())
+			{
+				if(!getFeatures(child).isTextNode())
+				{
+					allText = false;
+					break;
+				}
+			}
+			textChildren = allText;
+		}
+		return textChildren;
+	}
+
+	/**
+	 * @return true if the area has children and every child is a text node or has only text node children
+	 */
+	public boolean isVirtualTextNode()
+	{
+		if(virtualTextNode == null)
+		{
+			boolean result = area.getChildCount() > 0;
+			for (Area child : area.getChildAreas())
+			{
+				VipsBasedAreaFeatures childFeatures = getFeatures(child);
+				if(!childFeatures.isTextNode() && (child.getChildCount() == 0 || !childFeatures.hasTextChildren()))
+				{
+					result = false;
+					break;
+				}
+			}
+			virtualTextNode = result;
+		}
+		return virtualTextNode;
+	}
+
+	/**
+	 * @return index of the first child area with the maximal size, 0 if there is no child with a nonzero size
+	 */
+	public int getMaxSizeChild()
+	{
+		if(maxSizeChild == -1)
+		{
+			List<Area> children = area.getChildAreas();
+			int maxSize = 0;
+			int size = 0;
+			maxSizeChild = 0;
+			for (int i = 0; i < children.size(); i++)
+			{
+				size = children.get(i).getWidth()*children.get(i).getHeight();
+				if(size > maxSize)
+				{
+					maxSize = size;
+					maxSizeChild = i;
+				}
+			}
+		}
+		return maxSizeChild;
+	}
+
+	/**
+	 * The size isn't updated after changes deeper than in the child areas, it is meant for estimates only.
+	 * @return number of the areas in the subtree of the area, the area itself included
+	 */
+	public int getSubtreeSize()
+	{
+		if(subtreeSize == -1)
+		{
+			int size = 1;
+			for (Area child : area.getChildAreas())
+				size += getFeatures(child).getSubtreeSize();
+			subtreeSize = size;
+		}
+		return subtreeSize;
+	}
+
+	/**
+	 * @return true if some child area isn't an inline node (VIPS rule 5)
+	 */
+	public boolean hasLineBreakChild()
+	{
+		scanChildren();
+		return lineBreakChild;
+	}
+
+	/**
+	 * @return index of the first child area with a tag, which isn't an inline node, -1 if there is none (VIPS rule 6)
+	 */
+	public int getFirstTaggedLineBreakChild()
+	{
+		scanChildren();
+		return firstTaggedLineBreakChild;
+	}
+
+	/**
+	 * @return true if some child area is a text node or a virtual text node (VIPS rule 8)
+	 */
+	public boolean hasTextChild()
+	{
+		scanChildren();
+		return textChild;
+	}
+
+	/**
+	 * @return number of the child areas before the first one, which is neither a text node nor a virtual text node (VIPS rule 4)
+	 */
+	public int getLeadingTextChildren()
+	{
+		scanChildren();
+		return leadingTextChildren;
+	}
+
+	/**
+	 * @return true if the font size of some leading text child differs from the first child
+	 */
+	public boolean isFontSizeChanged()
+	{
+		scanChildren();
+		return fontSizeChanged;
+	}
+
+	/**
+	 * @return true if the font weight of some leading text child differs from the first child
+	 */
+	public boolean isFontWeightChanged()
+	{
+		scanChildren();
+		return fontWeightChanged;
+	}
+
+	/**
+	 * Gathers the facts about the child areas needed by the heuristic rules in one pass over the children
+	 */
+	private void scanChildren()
+	{
+		if(childrenScanned)
+			return;
+
+		lineBreakChild = false;
+		firstTaggedLineBreakChild = -1;
+		textChild = false;
+		leadingTextChildren = 0;
+		fontSizeChanged = false;
+		fontWeightChanged = false;
+		boolean leadingText = true;
+		VipsBasedAreaFeatures first = null;
+		List<Area> children = area.getChildAreas();
+		for (int i = 0; i < children.size(); i++)
+		{
+			VipsBasedAreaFeatures childFeatures = getFeatures(children.get(i));
+			TagCategory category = childFeatures.getTagCategory();
+			if(category != TagCategory.INLINE)
+			{
+				lineBreakChild = true;
+				if(firstTaggedLineBreakChild == -1 && category != TagCategory.NONE)
+					firstTaggedLineBreakChild = i;
+			}
+
+			//a child without boxes isn't a text node
+			boolean text = children.get(i).getBoxes().size() != 0 && (childFeatures.isTextNode() || childFeatures.isVirtualTextNode());
+			if(text)
+				textChild = true;
+			if(leadingText && text)
+			{
+				if(first == null)
+					first = childFeatures;
+				else
+				{
+					if(Float.compare(first.getFontSize(), childFeatures.getFontSize()) != 0)
+						fontSizeChanged = true;
+					if(Float.compare(first.getFontWeight(), childFeatures.getFontWeight()) != 0)
+						fontWeightChanged = true;
+				}
+				leadingTextChildren++;
+			}
+			else
+				leadingText = false;
+		}
+		childrenScanned = true;
+	}
+
+	/**
+	 * @return true if all the features are already computed, so the record won't be changed any more
+	 */
+	public boolean isComplete()
+	{
+		return tagCategory != null && textNode != null && visible != null && valid != null && textChildren != null
+				&& virtualTextNode != null && maxSizeChild != -1 && subtreeSize != -1 && childrenScanned;
+	}
+
+	/**
+	 * Computes all the structural flags at once, the flags of the child areas have to be computed before
+	 */
+	void computeAll()
+	{
+		getTagCategory();
+		isTextNode();
+		isVisible();
+		isValid();
+		hasTextChildren();
+		isVirtualTextNode();
+		getMaxSizeChild();
+		getSubtreeSize();
+		scanChildren();
+	}
+
+	private VipsBasedAreaFeatures getFeatures(Area child)
+	{
+		if(cache != null)
+			return cache.get((AreaImpl)child);
+		else
+			return new VipsBasedAreaFeatures((AreaImpl)child, null);
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * VipsBasedBatchConsumer.java
+ */
+package org.fit.vips;
+
+/**
+ * Consumer of the results of the pages segmented by {@link VipsBasedBatchSegmenter}.
+ * The results are passed in the order of the pages in the thread, which started the segmentation.
+ */
+public interface VipsBasedBatchConsumer
+{
+	/**
+	 * Called when a page is segmented and all the previous pages were consumed. The segmenter doesn't
+	 * keep the result after this call, so it may be released by the consumer.
+	 * @param result result of the page
+	 */
+	public void pageSegmented(VipsBasedBatchResult result);
+}
@@ -0,0 +1,90 @@
+/**
+ * VipsBasedBatchResult.java
+ */
+package org.fit.vips;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.fit.layout.model.AreaTree;
+
+/**
+ * Result of the segmentation of one page of a batch.
+ * The segmented area tree itself is modified in place.
+ */
+public class VipsBasedBatchResult
+{
+	private final int index;
+	private final AreaTree areaTree;
+	private final List<VipsBasedVisualBlock> visualBlocks;
+	private final List<VipsBasedSeparator> detectedSeparators;
+	private final long nanos;
+	private final Throwable failure;
+
+	public VipsBasedBatchResult(int index, AreaTree areaTree, List<VipsBasedVisualBlock> visualBlocks,
+			List<VipsBasedSeparator> detectedSeparators, long nanos, Throwable failure)
+	{
+		this.index = index;
+		this.areaTree = areaTree;
+		this.visualBlocks = visualBlocks;
+		this.detectedSeparators = detectedSeparators;
+		this.nanos = nanos;
+		this.failure = failure;
+	}
+
+	/**
+	 * @return order of the page in the batch
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public AreaTree getAreaTree()
+	{
+		return areaTree;
+	}
+
+	/**
+	 * @return visual blocks of the page, empty list if the segmentation failed
+	 */
+	public List<VipsBasedVisualBlock> getVisualBlocks()
+	{
+		if(visualBlocks == null)
+			return Collections.emptyList();
+		else
+			return visualBlocks;
+	}
+
+	/**
+	 * @return detected separators of the page, empty list if the segmentation failed
+	 */
+	public List<VipsBasedSeparator> getDetectedSeparators()
+	{
+		if(detectedSeparators == null)
+			return Collections.emptyList();
+		else
+			return detectedSeparators;
+	}
+
+	/**
+	 * @return time of the segmentation of the page in nanoseconds
+	 */
+	public long getNanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * @return exception thrown by the segmentation or null if the page was segmented
+	 */
+	public Throwable getFailure()
+	{
+		return failure;
+	}
+
+	public boolean isSuccessful()
+	{
+		return failure == null;
+	}
+}
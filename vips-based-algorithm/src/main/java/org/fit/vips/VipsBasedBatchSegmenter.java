@@ -0,0 +1,232 @@
+/**
+ * VipsBasedBatchSegmenter.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.fit.layout.model.AreaTree;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Segments batches of pages by one shared operator on a pool of worker threads.
+ * The number of pages loaded and not yet consumed is bounded, so the trees of a long
+ * batch can be loaded lazily by the iterator while the previous pages are segmented,
+ * and the results can be passed on in the order of the pages by a {@link VipsBasedBatchConsumer}.
+ * <p>
+ * The pages are segmented either on an executor given to the segmenter, which is shared by all the batches
+ * and never shut down by the segmenter, or on a pool of a given number of threads created for every batch.
+ */
+public class VipsBasedBatchSegmenter
+{
+	private final VipsBasedOperator operator;
+	private final int threads;
+	private final int maxInFlight;
+	/** Executor shared by the batches, null if a pool is created for every batch */
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a segmenter with one worker thread per available processor
+	 * @param operator configured operator used for all the pages
+	 */
+	public VipsBasedBatchSegmenter(VipsBasedOperator operator)
+	{
+		this(operator, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a segmenter with at most twice as many pages in flight as there are worker threads
+	 * @param operator configured operator used for all the pages
+	 * @param threads number of worker threads
+	 */
+	public VipsBasedBatchSegmenter(VipsBasedOperator operator, int threads)
+	{
+		this(operator, threads, 2 * threads);
+	}
+
+	/**
+	 * @param operator configured operator used for all the pages
+	 * @param threads number of worker threads
+	 * @param maxInFlight maximal number of pages loaded from the iterator and not yet consumed
+	 */
+	public VipsBasedBatchSegmenter(VipsBasedOperator operator, int threads, int maxInFlight)
+	{
+		if(threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		if(maxInFlight < threads)
+			throw new IllegalArgumentException("Number of pages in flight must not be lower than the number of threads: " + maxInFlight);
+		this.operator = operator;
+		this.threads = threads;
+		this.maxInFlight = maxInFlight;
+		this.executor = null;
+	}
+
+	/**
+	 * Creates a segmenter running the pages on a shared executor, e.g. the pool of an application.
+	 * The executor isn't shut down by the segmenter.
+	 * @param operator configured operator used for all the pages
+	 * @param executor executor of the page segmentations
+	 * @param maxInFlight maximal number of pages loaded from the iterator and not yet consumed
+	 */
+	public VipsBasedBatchSegmenter(VipsBasedOperator operator, ExecutorService executor, int maxInFlight)
+	{
+		if(executor == null)
+			throw new IllegalArgumentException("Executor must not be null");
+		if(maxInFlight < 1)
+			throw new IllegalArgumentException("Number of pages in flight must be positive: " + maxInFlight);
+		this.operator = operator;
+		this.threads = 0;
+		this.maxInFlight = maxInFlight;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return number of the worker threads of the pool created for every batch, 0 if a shared executor is used
+	 */
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	/**
+	 * @return shared executor of the page segmentations, null if a pool is created for every batch
+	 */
+	public ExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	public int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	/**
+	 * Segments all the pages of a batch
+	 * @see #segment(Iterator)
+	 */
+	public List<VipsBasedBatchResult> segment(Iterable<AreaTree> trees) throws InterruptedException
+	{
+		return segment(trees.iterator());
+	}
+
+	/**
+	 * Segments all the pages of a batch. A failure of one page doesn't stop the others,
+	 * it is reported in the page's result. All the results are kept until the batch is segmented,
+	 * {@link #segment(Iterator, VipsBasedBatchConsumer)} should be used for long batches.
+	 * @param trees area trees of the pages
+	 * @return results of the pages in the order of the trees
+	 * @throws InterruptedException when the calling thread is interrupted while waiting for the workers
+	 */
+	public List<VipsBasedBatchResult> segment(Iterator<AreaTree> trees) throws InterruptedException
+	{
+		final List<VipsBasedBatchResult> results = new ArrayList<VipsBasedBatchResult>();
+		segment(trees, new VipsBasedBatchConsumer() {
+			@Override
+			public void pageSegmented(VipsBasedBatchResult result)
+			{
+				results.add(result);
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Segments all the pages of a batch and passes their results to a consumer in the order of the trees.
+	 * A failure of one page doesn't stop the others, it is reported in the page's result.
+	 * A next tree is loaded only when less than the maximal number of pages are loaded and not consumed.
+	 * @param trees area trees of the pages
+	 * @param consumer consumer of the results, called in the calling thread
+	 * @throws InterruptedException when the calling thread is interrupted while waiting for the workers
+	 */
+	public void segment(Iterator<AreaTree> trees, VipsBasedBatchConsumer consumer) throws InterruptedException
+	{
+		ExecutorService batchExecutor = executor != null ? executor : Executors.newFixedThreadPool(threads);
+		Queue<Future<VipsBasedBatchResult>> pages = new ArrayDeque<Future<VipsBasedBatchResult>>(maxInFlight);
+
+		try
+		{
+			int index = 0;
+			while (trees.hasNext())
+			{
+				//the oldest page is consumed before another tree is loaded
+				if(pages.size() >= maxInFlight)
+					consumer.pageSegmented(getResult(pages.poll()));
+				pages.add(batchExecutor.submit(new PageTask(index++, trees.next())));
+			}
+			while (!pages.isEmpty())
+				consumer.pageSegmented(getResult(pages.poll()));
+		}
+		finally
+		{
+			if(executor == null)
+				batchExecutor.shutdownNow();
+			else
+			{
+				//pages of a failed batch mustn't occupy the shared executor
+				for (Future<VipsBasedBatchResult> page : pages)
+					page.cancel(true);
+			}
+		}
+	}
+
+	private VipsBasedBatchResult getResult(Future<VipsBasedBatchResult> page) throws InterruptedException
+	{
+		try
+		{
+			return page.get();
+		}
+		catch (ExecutionException e)
+		{
+			//the page task reports exceptions in the result, only errors get here
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Segmentation of one page
+	 */
+	private class PageTask implements Callable<VipsBasedBatchResult>
+	{
+		private final int index;
+		private final AreaTree tree;
+
+		PageTask(int index, AreaTree tree)
+		{
+			this.index = index;
+			this.tree = tree;
+		}
+
+		@Override
+		public VipsBasedBatchResult call()
+		{
+			long start = System.nanoTime();
+			try
+			{
+				AreaImpl root = (AreaImpl) tree.getRoot();
+				VipsBasedRunContext context = operator.performVipsAlgorithm(root, root);
+				return new VipsBasedBatchResult(index, tree, context.visualBlocksPool, context.detectedSeparators, System.nanoTime() - start, null);
+			}
+			catch (RuntimeException e)
+			{
+				return new VipsBasedBatchResult(index, tree, null, null, System.nanoTime() - start, e);
+			}
+			catch (StackOverflowError e)
+			{
+				//too deep area tree
+				return new VipsBasedBatchResult(index, tree, null, null, System.nanoTime() - start, e);
+			}
+		}
+	}
+}
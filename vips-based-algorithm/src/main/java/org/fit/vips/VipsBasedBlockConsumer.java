@@ -0,0 +1,21 @@
+/**
+ * VipsBasedBlockConsumer.java
+ */
+package org.fit.vips;
+
+/**
+ * Consumer of the visual blocks streamed by {@link VipsBasedOperator} during the segmentation.
+ * With the parallel division, the consumer is called from the threads of the pool, so it has to be thread safe.
+ */
+public interface VipsBasedBlockConsumer
+{
+	/**
+	 * Called as soon as a visual block is extracted and its degree of coherence is evaluated.
+	 * A block with the degree of coherence not greater than the permitted one may be divided again
+	 * in a nested run, its blocks are passed later with the nesting depth greater by one.
+	 * The DOM node of the block is copied only if {@link VipsBasedVisualBlock#getDomNode()} is called.
+	 * @param visualBlock extracted visual block
+	 * @param nestingDepth 0 for the blocks of the page, depth of the repeated division of a leaf node otherwise
+	 */
+	public void visualBlockExtracted(VipsBasedVisualBlock visualBlock, int nestingDepth);
+}
@@ -0,0 +1,357 @@
+/**
+ * VipsBasedDivisionRecords.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Rectangular;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.VipsBasedRunContext.NestedDivision;
+import org.fit.vips.VipsBasedRunContext.SeparatorOperation;
+
+/**
+ * Recorded divisions of the subtrees of a source page, which is segmented repeatedly.
+ * Every run segments a new copy of the source page, the records are kept by the source areas,
+ * so they can be replayed on the copy of the next run instead of dividing the same subtree again.
+ * A record refers to the records of its nested subtrees, it doesn't copy them.
+ * <p>
+ * Only the divisions, which didn't change the area tree, are recorded. A record is valid
+ * until some area of its subtree is changed, the changes are reported by {@link #invalidate(Collection)}.
+ */
+class VipsBasedDivisionRecords
+{
+	/** Minimal number of areas in a subtree, whose division is recorded */
+	static final int minRecordedSubtreeSize = 20;
+
+	/** Recorded divisions by the source root of the subtree */
+	private final Map<AreaImpl, SubtreeDivision> divisions = Collections.synchronizedMap(new IdentityHashMap<AreaImpl, SubtreeDivision>());
+
+	/** Bounds of the page and page threshold of the recorded divisions, they depend on them */
+	private Rectangular pageBounds = null;
+	private int pageThreshold = 0;
+
+	/** Source areas of the areas of the actual copy */
+	private final Map<AreaImpl, AreaImpl> sourceAreas = new IdentityHashMap<AreaImpl, AreaImpl>();
+	/** Areas of the actual copy by their source areas */
+	private final Map<AreaImpl, AreaImpl> copiedAreas = new IdentityHashMap<AreaImpl, AreaImpl>();
+	/** Source areas in the preorder of the copy, which is the order of the node ranks */
+	private final List<AreaImpl> rankedSourceAreas = new ArrayList<AreaImpl>();
+
+	/** Number of the visual blocks of the actual run taken from the records */
+	private final AtomicInteger replayedBlocks = new AtomicInteger();
+
+	/**
+	 * Copies the source page for a new run. The records made for other page bounds or other page threshold are dropped.
+	 * @param page root of the source page
+	 * @param pageThreshold page threshold of the run
+	 * @return root of the copy
+	 */
+	AreaImpl copyPage(AreaImpl page, int pageThreshold)
+	{
+		if(pageBounds == null || !isSameRectangle(pageBounds, page.getBounds()) || this.pageThreshold != pageThreshold)
+		{
+			divisions.clear();
+			pageBounds = new Rectangular(page.getBounds());
+			this.pageThreshold = pageThreshold;
+		}
+
+		sourceAreas.clear();
+		copiedAreas.clear();
+		rankedSourceAreas.clear();
+		replayedBlocks.set(0);
+
+		AreaImpl root = copyArea(page);
+		copyChildAreas(root, page);
+
+		//records of the areas removed from the page are never used again
+		divisions.keySet().retainAll(copiedAreas.keySet());
+		return root;
+	}
+
+	private static boolean isSameRectangle(Rectangular rect1, Rectangular rect2)
+	{
+		return rect1.getX1() == rect2.getX1() && rect1.getY1() == rect2.getY1()
+				&& rect1.getX2() == rect2.getX2() && rect1.getY2() == rect2.getY2();
+	}
+
+	private AreaImpl copyArea(AreaImpl source)
+	{
+		AreaImpl copy = new AreaImpl(source);
+		sourceAreas.put(copy, source);
+		copiedAreas.put(source, copy);
+		rankedSourceAreas.add(source);
+		return copy;
+	}
+
+	private void copyChildAreas(AreaImpl target, AreaImpl source)
+	{
+		for (Area child : source.getChildAreas())
+		{
+			AreaImpl newChild = copyArea((AreaImpl)child);
+			target.appendChild(newChild);
+			copyChildAreas(newChild, (AreaImpl)child);
+		}
+	}
+
+	/**
+	 * Drops the records of the subtrees containing some of the changed areas. An area is changed,
+	 * when its own properties or the list of its child areas were changed. New areas don't need to be reported.
+	 * @param changedAreas changed areas of the source page
+	 */
+	void invalidate(Collection<? extends Area> changedAreas)
+	{
+		for (Area area : changedAreas)
+		{
+			for (AreaImpl ancestor = (AreaImpl)area; ancestor != null; ancestor = ancestor.getParentArea())
+				divisions.remove(ancestor);
+		}
+	}
+
+	/**
+	 * Drops all the records
+	 */
+	void clear()
+	{
+		divisions.clear();
+	}
+
+	/**
+	 * @return number of the visual blocks of the actual run taken from the records
+	 */
+	int getReplayedBlocks()
+	{
+		return replayedBlocks.get();
+	}
+
+	/**
+	 * Finds a record of the division of a copied subtree
+	 * @param root root of the subtree in the actual copy
+	 * @return recorded division or null if there is no valid record
+	 */
+	SubtreeDivision getDivision(AreaImpl root)
+	{
+		AreaImpl source = sourceAreas.get(root);
+		if(source == null)
+			return null;
+		return divisions.get(source);
+	}
+
+	/**
+	 * Records the division of a copied subtree performed in a branch context, before the branch is joined.
+	 * The divisions of the nested subtrees recorded or replayed in the branch are referred.
+	 * @param root root of the divided subtree in the actual copy
+	 * @param nonDividable true if the root was marked as a non dividable node before the division
+	 * @param branch branch context of the division
+	 * @return recorded division, null if the division can't be kept by the source areas
+	 */
+	SubtreeDivision record(AreaImpl root, boolean nonDividable, VipsBasedRunContext branch)
+	{
+		AreaImpl source = sourceAreas.get(root);
+		if(source == null)
+			return null;
+
+		SubtreeDivision division = new SubtreeDivision(nonDividable, branch.docValue, branch.docValueIsKnown);
+		int block = 0;
+		int operation = 0;
+		for (NestedDivision nested : branch.nestedDivisions)
+		{
+			//nested divisions, which aren't recorded, are recorded as parts of this division
+			if(nested.division == null)
+				continue;
+			if(!recordParts(division, branch, block, nested.firstBlock, operation, nested.firstOperation))
+				return null;
+			division.parts.add(nested.division);
+			block = nested.endBlock;
+			operation = nested.endOperation;
+		}
+		if(!recordParts(division, branch, block, branch.visualBlocksPool.size(), operation, branch.separatorOperations.size()))
+			return null;
+
+		divisions.put(source, division);
+		return division;
+	}
+
+	/**
+	 * Records visual blocks and operations with separators of a branch, which don't belong to a nested division
+	 * @return false if some area of the blocks or operations isn't a copy of a source area
+	 */
+	private boolean recordParts(SubtreeDivision division, VipsBasedRunContext branch, int firstBlock, int endBlock,
+			int firstOperation, int endOperation)
+	{
+		for (int i = firstBlock; i < endBlock; i++)
+		{
+			VipsBasedVisualBlock block = branch.visualBlocksPool.get(i);
+			AreaImpl blockSource = sourceAreas.get(block.getArea());
+			if(blockSource == null)
+				return false;
+			division.parts.add(new RecordedBlock(blockSource, block.getDoc()));
+		}
+		for (int i = firstOperation; i < endOperation; i++)
+		{
+			RecordedOperation recorded = recordOperation(branch.separatorOperations.get(i));
+			if(recorded == null)
+				return false;
+			division.parts.add(recorded);
+		}
+		return true;
+	}
+
+	private RecordedOperation recordOperation(SeparatorOperation operation)
+	{
+		if(operation.separator != null)
+		{
+			//only separators of the input tree nodes, the rules add separators after changes of the tree
+			if(operation.nodeRank == -1)
+				return null;
+			//the separator is bound to the areas of the copy, the recorded one is bound to the source areas
+			VipsBasedSeparator separator = new VipsBasedSeparator(operation.separator.getType(), operation.separator);
+			if(operation.separator.getArea1() != null)
+				separator.setArea1(sourceAreas.get(operation.separator.getArea1()));
+			if(operation.separator.getArea2() != null)
+				separator.setArea2(sourceAreas.get(operation.separator.getArea2()));
+			if((separator.getArea1() == null) != (operation.separator.getArea1() == null)
+					|| (separator.getArea2() == null) != (operation.separator.getArea2() == null))
+				return null;
+			return new RecordedOperation(separator, rankedSourceAreas.get(operation.nodeRank), null, null);
+		}
+
+		AreaImpl root = sourceAreas.get(operation.root);
+		if(root == null)
+			return null;
+		List<AreaImpl> children = new ArrayList<AreaImpl>(operation.children.size());
+		for (Area child : operation.children)
+		{
+			AreaImpl childSource = sourceAreas.get(child);
+			if(childSource == null)
+				return null;
+			children.add(childSource);
+		}
+		return new RecordedOperation(null, root, children, operation.validChildren);
+	}
+
+	/**
+	 * Translates a recorded division to the areas of the actual copy
+	 * @param division recorded division
+	 * @param nodeRanks ranks of the nodes of the actual copy
+	 * @return visual blocks and operations with separators of the division in the recorded order
+	 */
+	Replay replay(SubtreeDivision division, Map<AreaImpl, Integer> nodeRanks)
+	{
+		Replay result = new Replay();
+		replayParts(division, nodeRanks, result);
+		replayedBlocks.addAndGet(result.blockAreas.size());
+		return result;
+	}
+
+	private void replayParts(SubtreeDivision division, Map<AreaImpl, Integer> nodeRanks, Replay result)
+	{
+		for (Object part : division.parts)
+		{
+			if(part instanceof SubtreeDivision)
+				replayParts((SubtreeDivision) part, nodeRanks, result);
+			else if(part instanceof RecordedBlock)
+			{
+				RecordedBlock block = (RecordedBlock) part;
+				result.blockAreas.add(copiedAreas.get(block.area));
+				result.blockDocs.add(block.doc);
+			}
+			else
+				result.operations.add(replayOperation((RecordedOperation) part, nodeRanks));
+		}
+	}
+
+	private SeparatorOperation replayOperation(RecordedOperation operation, Map<AreaImpl, Integer> nodeRanks)
+	{
+		if(operation.separator != null)
+		{
+			VipsBasedSeparator separator = new VipsBasedSeparator(operation.separator.getType(), operation.separator);
+			if(operation.separator.getArea1() != null)
+				separator.setArea1(copiedAreas.get(operation.separator.getArea1()));
+			if(operation.separator.getArea2() != null)
+				separator.setArea2(copiedAreas.get(operation.separator.getArea2()));
+			return new SeparatorOperation(separator, nodeRanks.get(copiedAreas.get(operation.root)));
+		}
+
+		List<Area> children = new ArrayList<Area>(operation.children.size());
+		for (AreaImpl child : operation.children)
+			children.add(copiedAreas.get(child));
+		return new SeparatorOperation(copiedAreas.get(operation.root), children, operation.validChildren);
+	}
+
+	/**
+	 * Division of one subtree kept by the source areas
+	 */
+	static class SubtreeDivision
+	{
+		/** The root was marked as a non dividable node by VIPS rule 7 of its parent */
+		final boolean nonDividable;
+		/** Degree of coherence value left by the rules after the division */
+		final float docValue;
+		final boolean docValueIsKnown;
+
+		/** Visual blocks, operations with separators and nested divisions in the order of the division */
+		private final List<Object> parts = new ArrayList<Object>();
+
+		SubtreeDivision(boolean nonDividable, float docValue, boolean docValueIsKnown)
+		{
+			this.nonDividable = nonDividable;
+			this.docValue = docValue;
+			this.docValueIsKnown = docValueIsKnown;
+		}
+	}
+
+	/**
+	 * Visual blocks and operations with separators of a replayed division in the areas of the actual copy
+	 */
+	static class Replay
+	{
+		final List<AreaImpl> blockAreas = new ArrayList<AreaImpl>();
+		final List<Float> blockDocs = new ArrayList<Float>();
+		final List<SeparatorOperation> operations = new ArrayList<SeparatorOperation>();
+	}
+
+	/**
+	 * Visual block of a source area
+	 */
+	private static class RecordedBlock
+	{
+		final AreaImpl area;
+		final float doc;
+
+		RecordedBlock(AreaImpl area, float doc)
+		{
+			this.area = area;
+			this.doc = doc;
+		}
+	}
+
+	/**
+	 * Recorded operation with separators kept by the source areas, either an addition of a separator
+	 * of an input tree node or a reconfiguration of separators adjacent to a divided node
+	 */
+	private static class RecordedOperation
+	{
+		/** Copy of the added separator bound to the source areas, null for a reconfiguration */
+		final VipsBasedSeparator separator;
+		/** Node, whose separator is added, or the reconfigured node */
+		final AreaImpl root;
+		final List<AreaImpl> children;
+		final boolean[] validChildren;
+
+		RecordedOperation(VipsBasedSeparator separator, AreaImpl root, List<AreaImpl> children, boolean[] validChildren)
+		{
+			this.separator = separator;
+			this.root = root;
+			this.children = children;
+			this.validChildren = validChildren;
+		}
+	}
+}
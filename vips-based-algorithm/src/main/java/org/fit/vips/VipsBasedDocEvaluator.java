@@ -0,0 +1,323 @@
+/**
+ * VipsBasedDocEvaluator.java
+ */
+package org.fit.vips;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Evaluates degree of coherence of a visual block from the styles of its leaf nodes.
+ * The styles are collected to primitive arrays and counted by primitive histograms in one pass
+ * over the leaf nodes. The buffers are reused, so once they are big enough, the evaluation
+ * doesn't allocate. An instance must not be used by more threads at once.
+ */
+public class VipsBasedDocEvaluator
+{
+	private int leafCount = 0;
+	private float[] fontSizes = new float[16];
+	private float[] fontWeights = new float[16];
+	private float[] fontStyles = new float[16];
+	private float[] underLines = new float[16];
+	private float[] lineThroughs = new float[16];
+	private Color[] backgroundColors = new Color[16];
+
+	private final Histogram fontSizesHistogram = new Histogram();
+	private final Histogram fontWeightsHistogram = new Histogram();
+	private final Histogram fontStylesHistogram = new Histogram();
+	private final Histogram underLinesHistogram = new Histogram();
+	private final Histogram lineThroughsHistogram = new Histogram();
+	private final Histogram backgroundColorsHistogram = new Histogram();
+
+	/**
+	 * Evaluates degree of coherence of visual block
+	 * @param root input visual block
+	 * @param min minimum allowed doc
+	 * @param max maximum allowed doc
+	 * @return degree of coherence value in given range
+	 */
+	public float evaluate(AreaImpl root, float min, float max)
+	{
+		float doc = max;
+
+		leafCount = 0;
+		fontSizesHistogram.clear();
+		fontWeightsHistogram.clear();
+		fontStylesHistogram.clear();
+		underLinesHistogram.clear();
+		lineThroughsHistogram.clear();
+		backgroundColorsHistogram.clear();
+
+		collectLeafNodes(root);
+
+		float primaryFontSize = dominantValue(fontSizesHistogram, fontSizes);
+		float primaryFontWeight = dominantValue(fontWeightsHistogram, fontWeights);
+		float primaryFontStyle = dominantValue(fontStylesHistogram, fontStyles);
+		float primaryUnderLine = dominantValue(underLinesHistogram, underLines);
+		float primaryLineThrough = dominantValue(lineThroughsHistogram, lineThroughs);
+		Color primaryColor = dominantColor();
+
+		try
+		{
+			for (int i = 0; i < leafCount; i++)
+			{
+				if(Float.compare(primaryFontSize, fontSizes[i]) != 0)
+					doc -= 0.1f;
+				if(Float.compare(primaryFontWeight, fontWeights[i]) != 0)
+					doc -= 0.1f;
+				if(Float.compare(primaryFontStyle, fontStyles[i]) != 0)
+					doc -= 0.1f;
+				if(Float.compare(primaryUnderLine, underLines[i]) != 0)
+					doc -= 0.1f;
+				if(Float.compare(primaryLineThrough, lineThroughs[i]) != 0)
+					doc -= 0.1f;
+				if((backgroundColors[i] != null) && (primaryColor != null))
+				{
+					if(!primaryColor.equals(backgroundColors[i]))
+						doc -= 0.25f;
+				}
+				else if((backgroundColors[i] == null && primaryColor != null) || (backgroundColors[i] != null && primaryColor == null))
+					doc -= 0.25f;
+
+				if(Float.compare(doc, min) <= 0)
+					return min;
+			}
+		}
+		finally
+		{
+			//don't keep colors of the evaluated page
+			Arrays.fill(backgroundColors, 0, leafCount, null);
+		}
+
+		return doc;
+	}
+
+	private void collectLeafNodes(AreaImpl root)
+	{
+		if(root.getChildCount() == 0)
+			addLeafNode(root);
+		else
+		{
+			for (Area child : root.getChildAreas())
+				collectLeafNodes((AreaImpl)child);
+		}
+	}
+
+	private void addLeafNode(AreaImpl leafNode)
+	{
+		if(leafCount == fontSizes.length)
+		{
+			int capacity = leafCount * 2;
+			fontSizes = Arrays.copyOf(fontSizes, capacity);
+			fontWeights = Arrays.copyOf(fontWeights, capacity);
+			fontStyles = Arrays.copyOf(fontStyles, capacity);
+			underLines = Arrays.copyOf(underLines, capacity);
+			lineThroughs = Arrays.copyOf(lineThroughs, capacity);
+			backgroundColors = Arrays.copyOf(backgroundColors, capacity);
+		}
+
+		int i = leafCount++;
+		fontSizes[i] = leafNode.getFontSize();
+		fontWeights[i] = leafNode.getFontWeight();
+		fontStyles[i] = leafNode.getFontStyle();
+		underLines[i] = leafNode.getUnderline();
+		lineThroughs[i] = leafNode.getLineThrough();
+		backgroundColors[i] = leafNode.getBackgroundColor();
+
+		fontSizesHistogram.add(Float.floatToIntBits(fontSizes[i]), i);
+		fontWeightsHistogram.add(Float.floatToIntBits(fontWeights[i]), i);
+		fontStylesHistogram.add(Float.floatToIntBits(fontStyles[i]), i);
+		underLinesHistogram.add(Float.floatToIntBits(underLines[i]), i);
+		lineThroughsHistogram.add(Float.floatToIntBits(lineThroughs[i]), i);
+		if(backgroundColors[i] == null)
+			backgroundColorsHistogram.addNull(i);
+		else
+			backgroundColorsHistogram.add(backgroundColors[i].hashCode(), i);
+	}
+
+	/**
+	 * Finds the most frequent value. From more values with the same frequency,
+	 * the first one in the iteration order of a java.util.HashSet is chosen.
+	 */
+	private float dominantValue(Histogram histogram, float[] values)
+	{
+		if(histogram.maxCountSlots() == 1)
+			return values[histogram.firstOccurrence(histogram.maxCountSlot())];
+
+		//only the tied values are put in the set, the values are added in the order of their occurrences
+		Set<Float> valueSet = new HashSet<Float>(getSetCapacity());
+		for (int i = 0; i < leafCount; i++)
+		{
+			if(histogram.count(Float.floatToIntBits(values[i])) == histogram.maxCount())
+				valueSet.add(values[i]);
+		}
+		return valueSet.iterator().next();
+	}
+
+	/**
+	 * Finds the most frequent background color. From more colors with the same frequency,
+	 * the first one in the iteration order of a java.util.HashSet is chosen.
+	 */
+	private Color dominantColor()
+	{
+		Histogram histogram = backgroundColorsHistogram;
+		if(histogram.maxCountSlots() == 1)
+			return backgroundColors[histogram.firstOccurrence(histogram.maxCountSlot())];
+
+		Set<Color> colorSet = new HashSet<Color>(getSetCapacity());
+		for (int i = 0; i < leafCount; i++)
+		{
+			Color color = backgroundColors[i];
+			int count = (color == null) ? histogram.nullCount() : histogram.count(color.hashCode());
+			if(count == histogram.maxCount())
+				colorSet.add(color);
+		}
+		return colorSet.iterator().next();
+	}
+
+	/**
+	 * @return initial capacity of a java.util.HashSet created from the collection of all the values,
+	 * a set of the same capacity keeps the relative iteration order of its values
+	 */
+	private int getSetCapacity()
+	{
+		return Math.max((int) (leafCount / .75f) + 1, 16);
+	}
+
+	/**
+	 * Histogram of integer keys with open addressing. Besides the frequency,
+	 * it keeps the first occurrence of every key. The null key is counted separately.
+	 */
+	private static class Histogram
+	{
+		static final int nullSlot = -1;
+		static final int noSlot = -2;
+
+		private int[] keys = new int[32];
+		private int[] counts = new int[32];
+		private int[] firstOccurrences = new int[32];
+		private int[] usedSlots = new int[16];
+		private int size = 0;
+		private int nullCount = 0;
+		private int nullFirstOccurrence = 0;
+		private int maxCount = 0;
+		private int maxCountSlot = noSlot;
+		private int maxCountSlots = 0;
+
+		void clear()
+		{
+			for (int i = 0; i < size; i++)
+				counts[usedSlots[i]] = 0;
+			size = 0;
+			nullCount = 0;
+			maxCount = 0;
+			maxCountSlot = noSlot;
+			maxCountSlots = 0;
+		}
+
+		void add(int key, int occurrence)
+		{
+			if((size + 1) * 2 > keys.length)
+				grow();
+
+			int slot = find(key);
+			if(counts[slot] == 0)
+			{
+				keys[slot] = key;
+				firstOccurrences[slot] = occurrence;
+				usedSlots[size++] = slot;
+			}
+			counted(slot, ++counts[slot]);
+		}
+
+		void addNull(int occurrence)
+		{
+			if(nullCount == 0)
+				nullFirstOccurrence = occurrence;
+			counted(nullSlot, ++nullCount);
+		}
+
+		int nullCount()
+		{
+			return nullCount;
+		}
+
+		int maxCount()
+		{
+			return maxCount;
+		}
+
+		int maxCountSlot()
+		{
+			return maxCountSlot;
+		}
+
+		int maxCountSlots()
+		{
+			return maxCountSlots;
+		}
+
+		int count(int key)
+		{
+			return counts[find(key)];
+		}
+
+		int firstOccurrence(int slot)
+		{
+			return (slot == nullSlot) ? nullFirstOccurrence : firstOccurrences[slot];
+		}
+
+		private void counted(int slot, int count)
+		{
+			if(count > maxCount)
+			{
+				maxCount = count;
+				maxCountSlot = slot;
+				maxCountSlots = 1;
+			}
+			else if(count == maxCount)
+				maxCountSlots++;
+		}
+
+		private int find(int key)
+		{
+			int mask = keys.length - 1;
+			int slot = (key * 0x9E3779B9) >>> 7 & mask;
+			while (counts[slot] != 0 && keys[slot] != key)
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private void grow()
+		{
+			int[] oldKeys = keys;
+			int[] oldCounts = counts;
+			int[] oldFirstOccurrences = firstOccurrences;
+			int[] oldUsedSlots = usedSlots;
+			int oldSize = size;
+			int oldMaxCountSlot = maxCountSlot;
+
+			keys = new int[oldKeys.length * 2];
+			counts = new int[oldKeys.length * 2];
+			firstOccurrences = new int[oldKeys.length * 2];
+			usedSlots = new int[oldKeys.length];
+			size = 0;
+			for (int i = 0; i < oldSize; i++)
+			{
+				int oldSlot = oldUsedSlots[i];
+				int slot = find(oldKeys[oldSlot]);
+				keys[slot] = oldKeys[oldSlot];
+				counts[slot] = oldCounts[oldSlot];
+				firstOccurrences[slot] = oldFirstOccurrences[oldSlot];
+				usedSlots[size++] = slot;
+				if(oldSlot == oldMaxCountSlot)
+					maxCountSlot = slot;
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * VipsBasedIncrementalSegmenter.java
+ */
+package org.fit.vips;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Segments one page repeatedly, while the page is changed in place, e.g. by scripts of a dynamic page.
+ * The source page itself is never modified, every segmentation runs on its new copy.
+ * <p>
+ * Divisions of the subtrees of the page are recorded, so a segmentation after a change divides
+ * only the subtrees containing the changed areas. The divisions of the unchanged subtrees
+ * are replayed with their visual blocks and separators, the remaining phases run on the whole page.
+ * The results are the same as from the segmentation of the changed page from scratch.
+ * A segmenter must be used by one thread only.
+ */
+public class VipsBasedIncrementalSegmenter
+{
+	private final VipsBasedOperator operator;
+	private final AreaImpl page;
+	private final VipsBasedDivisionRecords divisionRecords = new VipsBasedDivisionRecords();
+
+	/** Root of the last segmented copy of the page, null before the first segmentation */
+	private AreaImpl segmentedPage = null;
+	/** Context of the last segmentation */
+	private VipsBasedRunContext lastRunContext = null;
+
+	/**
+	 * @param operator configured operator used for all the segmentations
+	 * @param page root of the segmented page, it isn't modified by the segmentation
+	 */
+	public VipsBasedIncrementalSegmenter(VipsBasedOperator operator, AreaImpl page)
+	{
+		this.operator = operator;
+		this.page = page;
+	}
+
+	public AreaImpl getPage()
+	{
+		return page;
+	}
+
+	/**
+	 * @return root of the last segmented copy of the page, null before the first segmentation
+	 */
+	public AreaImpl getSegmentedPage()
+	{
+		return segmentedPage;
+	}
+
+	/**
+	 * @return visual blocks of the last segmentation
+	 */
+	public List<VipsBasedVisualBlock> getVisualBlocks()
+	{
+		if(lastRunContext != null)
+			return lastRunContext.visualBlocksPool;
+		else
+			return Collections.emptyList();
+	}
+
+	/**
+	 * @return detected separators of the last segmentation
+	 */
+	public List<VipsBasedSeparator> getDetectedSeparators()
+	{
+		if(lastRunContext != null)
+			return lastRunContext.detectedSeparators;
+		else
+			return Collections.emptyList();
+	}
+
+	/**
+	 * @return number of the visual blocks of the last segmentation reused from the previous segmentations
+	 */
+	public int getReusedVisualBlocks()
+	{
+		return divisionRecords.getReplayedBlocks();
+	}
+
+	/**
+	 * Segments the whole page from scratch
+	 * @return root of the segmented copy of the page
+	 */
+	public AreaImpl segment()
+	{
+		divisionRecords.clear();
+		return run();
+	}
+
+	/**
+	 * Segments the page after it was changed. An area is changed, when its own properties or the list
+	 * of its child areas were changed, all such areas have to be reported, the new areas need not to be.
+	 * The first call segments the whole page.
+	 * @param changedAreas changed areas of the page since the last segmentation
+	 * @return root of the segmented copy of the page
+	 */
+	public AreaImpl resegment(Collection<? extends Area> changedAreas)
+	{
+		divisionRecords.invalidate(changedAreas);
+		return run();
+	}
+
+	private AreaImpl run()
+	{
+		AreaImpl root = divisionRecords.copyPage(page, operator.getPageThreshold());
+		lastRunContext = operator.performVipsAlgorithm(root, root, divisionRecords);
+		segmentedPage = root;
+		return root;
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * VipsBasedListener.java
+ */
+package org.fit.vips;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Listener of the segmentation runs of {@link VipsBasedOperator}. When an operator is shared by more threads,
+ * the listener is called from all of them.
+ */
+public interface VipsBasedListener
+{
+	/**
+	 * Called in the thread of the run after the segmentation of a page is finished
+	 * @param root root of the segmented area tree
+	 * @param metrics metrics of the run
+	 */
+	public void segmentationFinished(AreaImpl root, VipsBasedMetrics metrics);
+}
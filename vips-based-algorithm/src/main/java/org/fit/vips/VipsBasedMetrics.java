@@ -0,0 +1,215 @@
+/**
+ * VipsBasedMetrics.java
+ */
+package org.fit.vips;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Metrics of one segmentation run: wall time and allocated bytes of the phases, numbers of visited nodes,
+ * produced visual blocks and separators, and evaluations and hits of the heuristic rules.
+ * The numbers of visited nodes and of the rule evaluations include the repeated divisions of the leaf nodes.
+ * The metrics are collected only when a {@link VipsBasedListener} is set to the operator.
+ */
+public class VipsBasedMetrics
+{
+	/**
+	 * Measured phases of the algorithm
+	 */
+	public enum Phase
+	{
+		/** Precomputation of the area features, ranking of the nodes, fingerprints of the subtrees and learning of the template */
+		PREPARATION,
+		/** Division of the tree including the detection of the separators of every divided node */
+		VISUAL_BLOCK_EXTRACTION,
+		LINE_JOINING,
+		SEPARATOR_SORTING,
+		SEPARATOR_FILTERING,
+		/** Content structure construction, the processing of the leaf nodes isn't included */
+		CONTENT_STRUCTURE_CONSTRUCTION,
+		/** Granularity check and the repeated division of the leaf nodes */
+		LEAF_NODES_PROCESSING
+	}
+
+	/**
+	 * Heuristic rules deciding, if a node is a visual block
+	 */
+	public enum Rule
+	{
+		VIPS_RULE_1, VIPS_RULE_2, VIPS_RULE_3, VIPS_RULE_4, VIPS_RULE_5, VIPS_RULE_6,
+		VIPS_RULE_7, VIPS_RULE_8, VIPS_RULE_9, VIPS_RULE_10, VIPS_RULE_11, VIPS_RULE_12,
+		IMPROVED_VIPS_RULE_1, IMPROVED_VIPS_RULE_2, IMPROVED_VIPS_RULE_3
+	}
+
+	/** Bean measuring the allocated bytes, null if the JVM doesn't support it */
+	private static final com.sun.management.ThreadMXBean threadBean = createThreadBean();
+
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private final long[] phaseAllocatedBytes = new long[Phase.values().length];
+	private final long[] phaseStartNanos = new long[Phase.values().length];
+	private final long[] phaseStartAllocatedBytes = new long[Phase.values().length];
+
+	private final int[] ruleEvaluations = new int[Rule.values().length];
+	private final int[] ruleHits = new int[Rule.values().length];
+
+	private int visitedNodes = 0;
+	private int visualBlocks = 0;
+	private int detectedSeparators = 0;
+	private int visualSeparators = 0;
+
+	/**
+	 * @return wall time of the phase in nanoseconds
+	 */
+	public long getPhaseNanos(Phase phase)
+	{
+		return phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * Only the allocations of the thread of the run are measured, the work done by other threads
+	 * of a fork/join pool isn't included.
+	 * @return bytes allocated during the phase, -1 if the JVM can't measure the allocated bytes
+	 */
+	public long getPhaseAllocatedBytes(Phase phase)
+	{
+		if(threadBean == null)
+			return -1;
+		return phaseAllocatedBytes[phase.ordinal()];
+	}
+
+	/**
+	 * @return number of the evaluations of the rule
+	 */
+	public int getRuleEvaluations(Rule rule)
+	{
+		return ruleEvaluations[rule.ordinal()];
+	}
+
+	/**
+	 * @return number of the evaluations of the rule, in which the rule was met
+	 */
+	public int getRuleHits(Rule rule)
+	{
+		return ruleHits[rule.ordinal()];
+	}
+
+	/**
+	 * @return number of the nodes visited in the visual block extraction
+	 */
+	public int getVisitedNodes()
+	{
+		return visitedNodes;
+	}
+
+	/**
+	 * @return number of the visual blocks of the run
+	 */
+	public int getVisualBlocks()
+	{
+		return visualBlocks;
+	}
+
+	/**
+	 * @return number of the separators detected before the filtering
+	 */
+	public int getDetectedSeparators()
+	{
+		return detectedSeparators;
+	}
+
+	/**
+	 * @return number of the separators left after the filtering of non visual separators
+	 */
+	public int getVisualSeparators()
+	{
+		return visualSeparators;
+	}
+
+	void phaseStarted(Phase phase)
+	{
+		phaseStartAllocatedBytes[phase.ordinal()] = getAllocatedBytes();
+		phaseStartNanos[phase.ordinal()] = System.nanoTime();
+	}
+
+	void phaseFinished(Phase phase)
+	{
+		phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStartNanos[phase.ordinal()];
+		phaseAllocatedBytes[phase.ordinal()] += getAllocatedBytes() - phaseStartAllocatedBytes[phase.ordinal()];
+	}
+
+	void ruleEvaluated(Rule rule, boolean hit)
+	{
+		ruleEvaluations[rule.ordinal()]++;
+		if(hit)
+			ruleHits[rule.ordinal()]++;
+	}
+
+	void nodeVisited()
+	{
+		visitedNodes++;
+	}
+
+	void setVisualBlocks(int visualBlocks)
+	{
+		this.visualBlocks = visualBlocks;
+	}
+
+	void setDetectedSeparators(int detectedSeparators)
+	{
+		this.detectedSeparators = detectedSeparators;
+	}
+
+	void setVisualSeparators(int visualSeparators)
+	{
+		this.visualSeparators = visualSeparators;
+	}
+
+	/**
+	 * Adds the counts of a branch of the run divided in another thread or of a repeated division of a leaf node
+	 * @param branch metrics of the branch or of the nested run
+	 */
+	void addCounts(VipsBasedMetrics branch)
+	{
+		for (int i = 0; i < ruleEvaluations.length; i++)
+		{
+			ruleEvaluations[i] += branch.ruleEvaluations[i];
+			ruleHits[i] += branch.ruleHits[i];
+		}
+		visitedNodes += branch.visitedNodes;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder("VipsBasedMetrics[");
+		for (Phase phase : Phase.values())
+		{
+			result.append(phase).append('=').append(getPhaseNanos(phase) / 1000).append("us/")
+					.append(getPhaseAllocatedBytes(phase)).append("B, ");
+		}
+		result.append("visitedNodes=").append(visitedNodes).append(", visualBlocks=").append(visualBlocks)
+				.append(", detectedSeparators=").append(detectedSeparators).append(", visualSeparators=").append(visualSeparators);
+		for (Rule rule : Rule.values())
+			result.append(", ").append(rule).append('=').append(getRuleHits(rule)).append('/').append(getRuleEvaluations(rule));
+		return result.append(']').toString();
+	}
+
+	private static long getAllocatedBytes()
+	{
+		if(threadBean == null)
+			return 0;
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean createThreadBean()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+				return sunBean;
+		}
+		return null;
+	}
+}
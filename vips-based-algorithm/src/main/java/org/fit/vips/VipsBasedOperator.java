@@ -0,0 +1,2742 @@
+/**
+ * VipsBasedOperator.java
+ */
+package org.fit.vips;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.fit.layout.impl.BaseOperator;
+import org.fit.layout.model.Area;
+import org.fit.layout.model.AreaTree;
+import org.fit.layout.model.Box;
+import org.fit.layout.model.Rectangular;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.segm.grouping.op.Separator;
+import org.fit.vips.VipsBasedMetrics.Phase;
+import org.fit.vips.VipsBasedMetrics.Rule;
+import org.fit.vips.VipsBasedRunContext.SeparatorOperation;
+import org.fit.vips.VipsBasedTagClassifier.TagCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Segmentation operator performing a VIPS based algorithm.
+ * The state of every run is kept in its own context, so one operator may be shared by more threads.
+ * The former protected fields visualBlocksPool and detectedSeparators are replaced by the getters
+ * {@link #getVisualBlocksPool()} and {@link #getDetectedSeparators()}, which return the results
+ * of the last finished run. Subclasses can't access the state of a run in progress.
+ * @author Michal Malanik
+ */
+public class VipsBasedOperator extends BaseOperator
+{
+	private static Logger log = LoggerFactory.getLogger(VipsBasedOperator.class);
+    
+	/** Predefined degree of coherence value */
+    protected float pdocValue;
+    protected static final int maxPdocValue = 1;
+    
+    /** Input parameter */
+	protected final String[] paramNames = { "pdocValue" };
+    protected final ValueType[] paramTypes = { ValueType.FLOAT };
+    
+    /** Starting tree level of algorithm */
+    private static final int startLevel = 0;
+    
+    /** Page root of the last finished run or the page root set later by {@link #setPageRoot(AreaImpl)} */
+    private volatile AreaImpl pageRootAreaImpl = null;
+    
+    /** Page threshold value value */
+    private int pageThreshold = 1; //percentage threshold value (1% of pageDimension is default)
+    
+    /** Height of the bands used for finding visual blocks on the same line of text */
+    private static final int lineBandHeight = 6;
+    
+    /** Print used heuristic rules to output? */
+    private boolean printRules = false;
+    
+    /** Pool for the parallel division of subtrees, null for the sequential division */
+    private ForkJoinPool forkJoinPool = null;
+    
+    /** Minimal number of areas in a subtree divided in parallel */
+    private int forkSubtreeSize = 500;
+    
+    /** Cache of the divisions of subtrees shared by the runs, null if the divisions aren't cached */
+    private VipsBasedSubtreeCache subtreeCache = null;
+    
+    /** Learned template of the segmented site, null if no template is learned */
+    private VipsBasedTemplateProfile templateProfile = null;
+    
+    /** Context of the last finished run, its results are returned by the getters */
+    private volatile VipsBasedRunContext lastRunContext = null;
+    
+    /** Listener of the runs, null if no metrics should be collected */
+    private volatile VipsBasedListener listener = null;
+    
+    /** Consumer of the streamed visual blocks, null if the blocks aren't streamed */
+    private volatile VipsBasedBlockConsumer blockConsumer = null;
+    
+    /** Depth of the repeated division of leaf nodes performed by this operator, 0 for the page operator */
+    private int nestingDepth = 0;
+    
+    /** Metrics of the run, which created this operator for a leaf node, null if no metrics are collected */
+    private VipsBasedMetrics parentMetrics = null;
+
+	public VipsBasedOperator()
+    {
+    	pdocValue = maxPdocValue;
+    }
+    
+    public VipsBasedOperator(float pdocValue)
+    {
+        this.pdocValue = pdocValue;
+    }
+	
+	@Override
+    public String getId()
+    {
+        return "FitLayout.Vips.VipsBased";
+    }
+    
+    @Override
+    public String getName()
+    {
+        return "VIPS";
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "Operator based on Visual Page Segmentation Algorithm.";
+    }
+
+    @Override
+    public String[] getParamNames()
+    {
+        return paramNames;
+    }
+
+    @Override
+    public ValueType[] getParamTypes()
+    {
+        return paramTypes;
+    }
+    
+    public float getPdocValue()
+    {
+        return pdocValue;
+    }
+
+    public void setPdocValue(float pdocValue)
+    {
+    	if((Float.compare(pdocValue, 0) >= 0) && (Float.compare(pdocValue, 1) <= 0))
+    		this.pdocValue = pdocValue;
+    }
+    
+    /**
+     * @return visual blocks of the last finished run
+     */
+    public List<VipsBasedVisualBlock> getVisualBlocksPool()
+    {
+    	VipsBasedRunContext context = lastRunContext;
+    	if(context != null)
+    		return context.visualBlocksPool;
+    	else
+    		return Collections.emptyList();
+	}
+    
+    /**
+     * @return detected separators of the last finished run
+     */
+    public List<VipsBasedSeparator> getDetectedSeparators()
+    {
+    	VipsBasedRunContext context = lastRunContext;
+    	if(context != null)
+    		return context.detectedSeparators;
+    	else
+    		return Collections.emptyList();
+	}
+    
+    public int getPageThreshold()
+    {
+		return pageThreshold;
+	}
+
+	public void setPageThreshold(int pageThreshold)
+	{
+		this.pageThreshold = pageThreshold;
+	}
+
+	public ForkJoinPool getForkJoinPool()
+	{
+		return forkJoinPool;
+	}
+
+	/**
+	 * Enables the parallel division of sibling subtrees in the phase of visual block extraction.
+	 * The result is the same as from the sequential division.
+	 * @param forkJoinPool pool used for the division, null for the sequential division
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool)
+	{
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public int getForkSubtreeSize()
+	{
+		return forkSubtreeSize;
+	}
+
+	/**
+	 * @param forkSubtreeSize minimal number of areas in a subtree, which is divided in parallel with its siblings
+	 */
+	public void setForkSubtreeSize(int forkSubtreeSize)
+	{
+		if(forkSubtreeSize > 0)
+			this.forkSubtreeSize = forkSubtreeSize;
+	}
+
+	public VipsBasedSubtreeCache getSubtreeCache()
+	{
+		return subtreeCache;
+	}
+
+	/**
+	 * Enables splicing of the cached divisions of the subtrees equal to the subtrees of the previously
+	 * segmented pages in the phase of visual block extraction. The result is the same as without the cache.
+	 * @param subtreeCache cache shared by the runs, null for no caching
+	 */
+	public void setSubtreeCache(VipsBasedSubtreeCache subtreeCache)
+	{
+		this.subtreeCache = subtreeCache;
+	}
+
+	public VipsBasedTemplateProfile getTemplateProfile()
+	{
+		return templateProfile;
+	}
+
+	/**
+	 * Enables learning of the layout template of one site from the first pages segmented by this operator.
+	 * The following pages reuse the divisions of the subtrees matching the template, the subtree cache
+	 * of the profile is used instead of the subtree cache of the operator. The repeated divisions
+	 * of the leaf nodes aren't cached then. The result is the same as without the profile.
+	 * @param templateProfile profile of the site, null for no template
+	 */
+	public void setTemplateProfile(VipsBasedTemplateProfile templateProfile)
+	{
+		this.templateProfile = templateProfile;
+	}
+
+	public VipsBasedListener getListener()
+	{
+		return listener;
+	}
+
+	/**
+	 * Sets a listener, which gets metrics of every run. The metrics aren't collected without a listener.
+	 * @param listener listener of the runs, null for no listener
+	 */
+	public void setListener(VipsBasedListener listener)
+	{
+		this.listener = listener;
+	}
+
+	public VipsBasedBlockConsumer getBlockConsumer()
+	{
+		return blockConsumer;
+	}
+
+	/**
+	 * Enables the streaming of the visual blocks. Every visual block is passed to the consumer as soon as
+	 * it is extracted, including the blocks of the repeated division of the leaf nodes. The results of the runs
+	 * aren't retained by the operator then, so {@link #getVisualBlocksPool()} and {@link #getDetectedSeparators()}
+	 * return empty lists.
+	 * @param blockConsumer consumer of the visual blocks, null for no streaming
+	 */
+	public void setBlockConsumer(VipsBasedBlockConsumer blockConsumer)
+	{
+		this.blockConsumer = blockConsumer;
+	}
+
+	/**
+	 * @return page root of the last finished run or the page root set later by {@link #setPageRoot(AreaImpl)}
+	 */
+	public AreaImpl getPageRoot()
+    {
+		return pageRootAreaImpl;
+	}
+
+	public void setPageRoot(AreaImpl pageRootAreaImpl)
+	{
+		this.pageRootAreaImpl = pageRootAreaImpl;
+	}
+    
+    //----------------------------------------------------
+    
+    @Override
+    public void apply(AreaTree atree)
+    {
+        performVipsAlgorithm(createRunContext((AreaImpl) atree.getRoot()), (AreaImpl) atree.getRoot());
+    }
+
+    @Override
+    public void apply(AreaTree atree, Area root)
+    {	
+    	performVipsAlgorithm(createRunContext((AreaImpl) root), (AreaImpl) root);
+    }
+    
+    //----------------------------------------------------
+    
+    /**
+     * Performs all phases of segmentation process with the page root set by {@link #setPageRoot(AreaImpl)}.
+     * The page root is read once at the start, so a run finished by another thread meanwhile doesn't change it.
+     * @param root node of input AreaTree, it is the page root too, when no page root is set
+     */
+    protected void performVipsAlgorithm(AreaImpl root)
+    {
+    	AreaImpl pageRoot = getPageRoot();
+    	performVipsAlgorithm(createRunContext(pageRoot != null ? pageRoot : root), root);
+    }
+    
+    
+    
+    /**
+     * Performs all phases of segmentation process in a new run context
+     * @param pageRoot page root of the run
+     * @param root node of input AreaTree
+     * @return context of the finished run with its results
+     */
+    VipsBasedRunContext performVipsAlgorithm(AreaImpl pageRoot, AreaImpl root)
+    {
+    	return performVipsAlgorithm(pageRoot, root, null);
+    }
+    
+    
+    
+    /**
+     * Performs all phases of segmentation process in a new run context, which replays
+     * the recorded divisions of unchanged subtrees and records the new ones
+     * @param pageRoot page root of the run
+     * @param root node of input AreaTree
+     * @param divisionRecords recorded divisions of the page, null if the divisions shouldn't be recorded
+     * @return context of the finished run with its results
+     */
+    VipsBasedRunContext performVipsAlgorithm(AreaImpl pageRoot, AreaImpl root, VipsBasedDivisionRecords divisionRecords)
+    {
+    	VipsBasedRunContext context = createRunContext(pageRoot);
+    	context.divisionRecords = divisionRecords;
+    	performVipsAlgorithm(context, root);
+    	return context;
+    }
+    
+    
+    
+    /**
+     * Creates a context of a new run with the actual settings of the operator
+     * @param pageRoot page root of the run
+     * @return new run context
+     */
+    VipsBasedRunContext createRunContext(AreaImpl pageRoot)
+    {
+    	VipsBasedMetrics metrics = null;
+    	if(listener != null || parentMetrics != null)
+    		metrics = new VipsBasedMetrics();
+    	VipsBasedTemplateProfile runProfile = templateProfile;
+    	VipsBasedSubtreeCache runCache = runProfile != null ? runProfile.getSubtreeCache() : subtreeCache;
+    	VipsBasedRunContext context = new VipsBasedRunContext(pageRoot, pdocValue, pageThreshold, forkJoinPool, forkSubtreeSize,
+    			runCache, runProfile, metrics);
+    	context.blockConsumer = blockConsumer;
+    	context.nestingDepth = nestingDepth;
+    	return context;
+    }
+    
+    
+    
+    /**
+     * Performs all phases of segmentation process 
+     * @param context context of the run
+     * @param root node of input AreaTree
+     */
+    private void performVipsAlgorithm(VipsBasedRunContext context, AreaImpl root)
+    {
+    	extractVisualBlocks(context, root);
+    	
+    	startPhase(context, Phase.LINE_JOINING);
+    	joinLineVisualBlocks(context);
+    	finishPhase(context, Phase.LINE_JOINING);
+    	if(context.metrics != null)
+    		context.metrics.setDetectedSeparators(context.detectedSeparators.size());
+    	
+    	startPhase(context, Phase.SEPARATOR_SORTING);
+    	sortSeparatorsAscending(context);
+    	finishPhase(context, Phase.SEPARATOR_SORTING);
+    	
+    	startPhase(context, Phase.SEPARATOR_FILTERING);
+    	filterNonVisualSeparators(context);
+    	finishPhase(context, Phase.SEPARATOR_FILTERING);
+    	
+    	contentStructureConstruction(context, root);
+    	
+    	//the page root is published together with the results
+    	pageRootAreaImpl = context.pageRoot;
+    	//streamed results aren't retained
+    	if(context.blockConsumer == null)
+    		lastRunContext = context;
+    	else
+    		lastRunContext = null;
+    	
+    	VipsBasedListener runListener = listener;
+    	if(context.metrics != null && runListener != null)
+    	{
+    		context.metrics.setVisualBlocks(context.visualBlocksPool.size());
+    		context.metrics.setVisualSeparators(context.detectedSeparators.size());
+    		runListener.segmentationFinished(root, context.metrics);
+    	}
+    	if(context.metrics != null && parentMetrics != null)
+    	{
+    		//leaf nodes of one run may be divided again in parallel
+    		synchronized (parentMetrics)
+    		{
+    			parentMetrics.addCounts(context.metrics);
+    		}
+    	}
+    }
+    
+    
+    
+    private void startPhase(VipsBasedRunContext context, Phase phase)
+    {
+    	if(context.metrics != null)
+    		context.metrics.phaseStarted(phase);
+    }
+    
+    
+    
+    private void finishPhase(VipsBasedRunContext context, Phase phase)
+    {
+    	if(context.metrics != null)
+    		context.metrics.phaseFinished(phase);
+    }
+    
+    
+    
+    /**
+     * Counts an evaluation of a heuristic rule
+     * @param rule evaluated rule
+     * @param met result of the rule
+     * @return result of the rule
+     */
+    private boolean countRule(VipsBasedRunContext context, Rule rule, boolean met)
+    {
+    	if(context.metrics != null)
+    		context.metrics.ruleEvaluated(rule, met);
+    	return met;
+    }
+    
+    
+    
+    /**
+     * Performs the phases of preparation and visual block extraction, the visual separators
+     * of a node are detected, when the division reaches it
+     * @param context context of the run
+     * @param root node of input AreaTree
+     */
+    void extractVisualBlocks(VipsBasedRunContext context, AreaImpl root)
+    {
+    	startPhase(context, Phase.PREPARATION);
+    	//features of the subtrees replayed from the records are mostly never used
+    	if(context.divisionRecords == null)
+    		context.featureCache.precompute(root);
+    	rankNodes(context, root);
+    	if(context.subtreeCache != null)
+    		VipsBasedSubtreeCache.computeFingerprints(root, context.fingerprints);
+    	if(context.templateProfile != null)
+    	{
+    		VipsBasedTemplateProfile.computePaths(root, context.fingerprints, context.subtreePaths);
+    		context.templateProfile.learn(context.subtreePaths, context.fingerprints);
+    	}
+    	finishPhase(context, Phase.PREPARATION);
+
+        //phase of visual block extraction
+    	startPhase(context, Phase.VISUAL_BLOCK_EXTRACTION);
+    	if(context.forkJoinPool != null)
+    		invokeInPool(context, new DivisionTask(context, root, startLevel));
+    	else
+    		divideDomTree(context, root, startLevel);
+    	
+    	//separators of the input tree nodes go first as if they were detected before the division
+    	context.detectedSeparators.addAll(0, context.getNodeSeparators());
+    	finishPhase(context, Phase.VISUAL_BLOCK_EXTRACTION);
+    }
+    
+    
+    
+    /**
+     * Joining together all visual blocks on each single line of text
+     */
+    void joinLineVisualBlocks(VipsBasedRunContext context)
+    {
+    	AreaImpl firstArea = null;
+    	AreaImpl secondArea = null;
+    	VipsBasedSeparator lineSeparator = null;
+    	Map<Integer, LineBand> bands = createLineBands(context);
+    	int[] candidates = new int[16];
+    	int candidatesCount = 0;
+    	
+		for (VipsBasedVisualBlock firstVisualBlock : context.visualBlocksPool)
+		{
+			firstArea = firstVisualBlock.getArea();
+			candidatesCount = 0;
+			
+			//only blocks from the neighbouring bands with X1 close to X2 of the first block can be joined with it
+			for (int band = getLineBand(firstArea.getY1() - lineBandHeight + 1); band <= getLineBand(firstArea.getY1() + lineBandHeight - 1); band++)
+			{
+				LineBand lineBand = bands.get(band);
+				if(lineBand == null)
+					continue;
+				
+				for (int i = lineBand.firstWithX1(firstArea.getX2() - 1); i < lineBand.x1.length && lineBand.x1[i] <= firstArea.getX2() + 1; i++)
+				{
+					secondArea = context.visualBlocksPool.get(lineBand.blocks[i]).getArea();
+					
+					if((Math.abs(firstArea.getX2() - secondArea.getX1()) < 2) && (Math.abs(firstArea.getY1() - secondArea.getY1()) < 6) && (Math.abs(firstArea.getY2() - secondArea.getY2()) < 6))
+					{
+						if(candidatesCount == candidates.length)
+							candidates = Arrays.copyOf(candidates, candidatesCount * 2);
+						candidates[candidatesCount++] = lineBand.blocks[i];
+					}
+				}
+			}
+			
+			//keep the order of the pool, so the separators are the same as from the all-pairs comparison
+			Arrays.sort(candidates, 0, candidatesCount);
+			for (int i = 0; i < candidatesCount; i++)
+			{
+				secondArea = context.visualBlocksPool.get(candidates[i]).getArea();
+				lineSeparator = new VipsBasedSeparator(Separator.VERTICAL, firstArea.getX2(), firstArea.getY1(), secondArea.getX1(), firstArea.getY2());
+				lineSeparator.setArea1(firstArea);
+				lineSeparator.setArea2(secondArea);
+				addDetectedSeparator(context, lineSeparator);
+			}
+		}
+		
+	}
+    
+    
+    
+    /**
+     * Indexes visual blocks by the band of their Y1 coordinate, 
+     * blocks in every band are sorted by X1 coordinate
+     * @return bands of visual blocks indexed by band number
+     */
+    private Map<Integer, LineBand> createLineBands(VipsBasedRunContext context)
+    {
+    	final VipsBasedVisualBlockPool visualBlocksPool = context.visualBlocksPool;
+    	Map<Integer, List<Integer>> bandBlocks = new HashMap<Integer, List<Integer>>();
+    	
+    	for (int i = 0; i < visualBlocksPool.size(); i++)
+    	{
+    		int band = getLineBand(visualBlocksPool.get(i).getArea().getY1());
+    		List<Integer> blocks = bandBlocks.get(band);
+    		if(blocks == null)
+    		{
+    			blocks = new ArrayList<Integer>();
+    			bandBlocks.put(band, blocks);
+    		}
+    		blocks.add(i);
+		}
+    	
+    	Map<Integer, LineBand> result = new HashMap<Integer, LineBand>();
+    	for (Map.Entry<Integer, List<Integer>> entry : bandBlocks.entrySet())
+    	{
+    		List<Integer> blocks = entry.getValue();
+    		Collections.sort(blocks, new Comparator<Integer>(){
+        		@Override
+        	    public int compare(Integer block1, Integer block2) {
+        	        return Integer.compare(visualBlocksPool.get(block1).getArea().getX1(), visualBlocksPool.get(block2).getArea().getX1());
+        	    }
+        	});
+    		
+    		LineBand lineBand = new LineBand(blocks.size());
+    		for (int i = 0; i < blocks.size(); i++)
+    		{
+    			lineBand.blocks[i] = blocks.get(i);
+    			lineBand.x1[i] = visualBlocksPool.get(blocks.get(i)).getArea().getX1();
+			}
+    		result.put(entry.getKey(), lineBand);
+		}
+    	
+    	return result;
+    }
+    
+    
+    
+    /**
+     * Computes the band of given Y coordinate used for joining line visual blocks
+     * @param y coordinate
+     * @return band number
+     */
+    private static int getLineBand(int y)
+    {
+    	if(y >= 0)
+    		return y / lineBandHeight;
+    	else
+    		return -((-y + lineBandHeight - 1) / lineBandHeight);
+    }
+    
+    
+    
+    /**
+     * Visual blocks from one band sorted by X1 coordinate
+     */
+    private static class LineBand
+    {
+    	/** indices of the visual blocks in the pool */
+    	final int[] blocks;
+    	/** X1 coordinates of the visual blocks */
+    	final int[] x1;
+    	
+    	LineBand(int size)
+    	{
+    		blocks = new int[size];
+    		x1 = new int[size];
+    	}
+    	
+    	/**
+    	 * Finds the first block with X1 coordinate not lower than given value
+    	 * @param value searched X1 coordinate
+    	 * @return index of the block in this band
+    	 */
+    	int firstWithX1(int value)
+    	{
+    		int low = 0;
+    		int high = x1.length;
+    		while (low < high)
+    		{
+    			int middle = (low + high) >>> 1;
+    			if(x1[middle] < value)
+    				low = middle + 1;
+    			else
+    				high = middle;
+    		}
+    		return low;
+    	}
+    }
+
+    
+    
+    /**
+     * Performs the phases of content structure construction and leaf nodes processing
+     * @param root node of input AreaTree
+     */
+	void contentStructureConstruction(VipsBasedRunContext context, AreaImpl root)
+    {
+    	startPhase(context, Phase.CONTENT_STRUCTURE_CONSTRUCTION);
+    	List<AreaImpl> createdSubtrees = new ArrayList<AreaImpl>();
+    	List<AreaImpl> rootChilds = new ArrayList<AreaImpl>();
+    	Boolean notValidArea = false;
+    	
+    	for (VipsBasedVisualBlock visualBlock  : context.visualBlocksPool)
+    	{
+			createdSubtrees.add(visualBlock.getArea());
+		}
+    	
+    	VipsBasedSeparatorQueue separatorQueue = new VipsBasedSeparatorQueue(context.detectedSeparators);
+    	VipsBasedSeparator actualSeparator = null;
+    	AreaImpl newNode = null;
+    	while (!separatorQueue.isEmpty())
+    	{	
+    		actualSeparator = separatorQueue.poll();
+    		context.separatorIndex.remove(actualSeparator);
+    		
+    		//separator without two different adjacent areas can't join anything, it is dropped
+    		if((actualSeparator.getArea1() != null) && (actualSeparator.getArea2() != null) && (actualSeparator.getArea1() != actualSeparator.getArea2()))
+    		{
+    			//merge separator's visual blocks to new node
+    			newNode = new AreaImpl(0, 0, 0, 0);
+        		newNode.appendChild(actualSeparator.getArea1());
+        		newNode.appendChild(actualSeparator.getArea2());
+        		
+        		//join all blocks which are siblings and are separated with same weight separator
+        		Iterator<VipsBasedSeparator> sameWeightSeparators = separatorQueue.iterator();
+        		//for-each separator with same weight
+        		while(sameWeightSeparators.hasNext())
+        		{
+        			VipsBasedSeparator sameWeightSeparator = sameWeightSeparators.next();
+        			
+					if(sameWeightSeparator.getWeight() != actualSeparator.getWeight())
+						break;
+					
+					//for-each child of newNode
+					for (Area child : newNode.getChildAreas())
+					{
+						if((sameWeightSeparator.getArea1() == child) && (sameWeightSeparator.getArea2() != child) && (actualSeparator.getType() == sameWeightSeparator.getType()))
+						{
+							newNode.appendChild(sameWeightSeparator.getArea2());
+							sameWeightSeparators.remove();
+							context.separatorIndex.remove(sameWeightSeparator);
+							break;
+						}
+						else if ((sameWeightSeparator.getArea2() == child) && (sameWeightSeparator.getArea1() != child) && (actualSeparator.getType() == sameWeightSeparator.getType()))
+						{
+							newNode.appendChild(sameWeightSeparator.getArea1());
+							sameWeightSeparators.remove();
+							context.separatorIndex.remove(sameWeightSeparator);
+							break;
+						}	
+					}
+				}
+        		
+        		//update bounds of the newNode
+        		updateBounds(newNode);
+        		context.featureCache.invalidate(newNode);
+        		
+        		//remove area, which is crossing with another area
+        		if(actualSeparator.getType() == Separator.HORIZONTAL)
+        		{
+        			for (AreaImpl subTree : createdSubtrees)
+            		{
+    					if(newNode.getBounds().intersects(subTree.getBounds()) && !newNode.getBounds().encloses(subTree.getBounds()))
+    					{
+    						notValidArea = true;
+    						break;
+    					}
+    				}
+        			if(notValidArea)
+        			{
+        				notValidArea = false;
+        				continue;
+        			}
+        		}
+        		
+        		//update adjacent areas of remaining separators
+        		for (Area child : newNode.getChildAreas())
+        		{
+        			for (VipsBasedSeparator separator : getAssociatedSeparators(context, (AreaImpl)child))
+        			{
+        				if(separator.getArea1() == child)
+            			{
+            				separator.setArea1(newNode);
+            			}
+            			else if (separator.getArea2() == child)
+            			{
+            				separator.setArea2(newNode);
+    					}
+					}
+        		}
+        		
+        		createdSubtrees.add(newNode);
+        		for (Area child : newNode.getChildAreas())
+        		{
+        			if(createdSubtrees.contains(child))
+            			createdSubtrees.remove(child);
+				}
+    		}
+		}
+    	
+    	
+    	
+    	//append unused subtrees to final tree
+    	createdSubtrees.remove(newNode);
+    	if(createdSubtrees.size() != 0 && newNode != null)
+    		rootChilds = processUnusedSubtrees(context, newNode, createdSubtrees);
+    	
+    	//refer actual tree to output
+    	root.removeAllChildren();
+    	if(newNode != null)
+    		root.appendChild(newNode);
+    	if(rootChilds.size() != 0)
+    	{
+    		for (AreaImpl child : rootChilds)
+			{
+				root.appendChild(child);
+			}
+    	}
+    	context.featureCache.invalidate(root);
+    	finishPhase(context, Phase.CONTENT_STRUCTURE_CONSTRUCTION);
+    	
+    	//if granularity condition isn't met, further divide leaf nodes.
+    	startPhase(context, Phase.LEAF_NODES_PROCESSING);
+    	if(!processLeafNodesInParallel(context, root))
+    		processLeafNodes(context, root);
+    	finishPhase(context, Phase.LEAF_NODES_PROCESSING);
+    }
+    
+	
+	
+	/**
+     * After joining some visual blocks to new one, we need to update bounds of
+     * new created area to surround all the children
+     * @param newNode area which needs to update bounds
+     */
+    private void updateBounds(AreaImpl newNode)
+    {
+    	for (int i = 0; i < newNode.getChildCount(); i++)
+		{
+			Area child = newNode.getChildArea(i);
+			Rectangular bounds = newNode.getBounds();
+			
+			if(i == 0)
+			{
+				bounds.setX1(child.getX1());
+				bounds.setY1(child.getY1());
+				newNode.setBounds(bounds);
+			}
+			else
+			{
+				if(child.getX1() < bounds.getX1())
+				{
+					bounds.setX1(child.getX1());
+					newNode.setBounds(bounds);
+				}
+				if(child.getY1() < bounds.getY1())
+				{
+					bounds.setY1(child.getY1());
+					newNode.setBounds(bounds);
+				}
+			}
+		}
+	}
+
+    
+    
+    /**
+     * Process unused subtrees and appending them to
+     * the right place in the content structure
+     * @param root node of input AreaTree
+     * @param subtrees list of unused subtrees
+     * @return list of areas, which are direct children of root
+     */
+	private List<AreaImpl> processUnusedSubtrees(VipsBasedRunContext context, AreaImpl root, List<AreaImpl> subtrees)
+    {
+    	Collections.reverse(subtrees);
+    	AreaImpl lastIntersectingArea = null;
+    	List<AreaImpl> result = new ArrayList<AreaImpl>();
+    	
+		for (AreaImpl subtree : subtrees)
+		{
+			lastIntersectingArea = getLastSurroundingArea(root, subtree);
+			if(lastIntersectingArea != null)
+			{
+				lastIntersectingArea.appendChild(subtree);
+				context.featureCache.invalidate(lastIntersectingArea);
+			}
+			else
+				result.add(subtree);
+		}
+		return result;
+	}
+
+	
+	
+	/**
+     * Finds the last area in root, which is
+     * completely surrounding unused area
+     * @param root node of input AreaTree
+     * @param unused area
+     * @return resulting area
+     */
+	private AreaImpl getLastSurroundingArea(AreaImpl root, AreaImpl area)
+	{
+		Area child = null;
+		AreaImpl tmpResult = null;
+		AreaImpl result = null;
+		
+		for (int i = 0; i < root.getChildCount(); i++)
+		{
+			child = root.getChildArea(i);
+			if((tmpResult = getLastSurroundingArea((AreaImpl)child, area)) != null)
+				result = tmpResult;
+		}
+		
+		if(result == null)
+		{
+			if((root.getBounds().encloses(area.getBounds())))
+			{
+				return root;
+			}
+			else
+			{
+				return null;
+			}
+		}
+		else
+		{
+			return result;
+		}
+	}
+
+	
+	
+	private void printCreatedSubtree(AreaImpl root, int level)
+    {
+    	if(level == 0)
+    	{
+    		System.out.println();
+    		System.out.println("--------------------------------------------");
+    		System.out.println("Root: " + root.toString());
+    	}
+		if(root.getChildCount() != 0)
+    	{
+			for (int i = 0; i < level; i++) {
+				System.out.print("      ");
+			}
+			if(level != 0)
+				System.out.println("NOT Leaf node:" + root.toString());
+			level++;
+    		for (int i = 0; i < root.getChildCount(); i++)
+    		{
+    			printCreatedSubtree((AreaImpl) root.getChildArea(i), level);
+    		}
+    	}
+    	else
+    	{
+    		for (int i = 0; i < level; i++) {
+				System.out.print("      ");
+			}
+    		System.out.println("Leaf node:" + root.toString());
+    	}
+
+	}
+
+	
+	
+	/**
+     * Performs a phase of content structure construction
+     * @param root node of input AreaTree
+     * @param currentLevel starting level of input AreaTree
+     */
+	private void divideDomTree(VipsBasedRunContext context, AreaImpl root, int currentLevel)
+    {  	
+    	if((context.divisionRecords != null || context.subtreeCache != null) && currentLevel != startLevel)
+    	{
+    		if(context.divisionRecords != null && replayDivision(context, root))
+    			return;
+    		if(context.featureCache.get(root).getSubtreeSize() >= VipsBasedDivisionRecords.minRecordedSubtreeSize)
+    		{
+    			boolean cached = isCachedSubtree(context, root);
+    			if(cached && replayCachedDivision(context, root))
+    				return;
+    			if(cached || context.divisionRecords != null)
+    			{
+    				recordDivision(context, root, currentLevel, cached);
+    				return;
+    			}
+    		}
+    	}
+    	divideNode(context, root, currentLevel);
+    }
+    
+    
+    
+    /**
+     * Divides a node of AreaTree by the heuristic rules
+     * @param root node of input AreaTree
+     * @param currentLevel node's current level in AreaTree
+     */
+    private void divideNode(VipsBasedRunContext context, AreaImpl root, int currentLevel)
+    {
+    	if(context.metrics != null)
+    		context.metrics.nodeVisited();
+    	detectNodeSeparators(context, root);
+    	
+    	if(dividable(context, root, currentLevel)) //divide this block
+    	{ 
+    		if(!context.isNotValidNode)
+    		{
+    			if(isForkable(context, root))
+    				divideChildrenInParallel(context, root, currentLevel);
+    			else
+    			{
+		    		for (int i = 0; i < root.getChildCount(); i++)
+		    		{
+		    			reconfigureSeparators(context, root);
+		    			divideDomTree(context, (AreaImpl) root.getChildArea(i), ++currentLevel);
+		    		}
+    			}
+    		}
+    		else
+    			context.isNotValidNode = false;
+    	}
+    	else //is a visual block
+    	{ 	
+    		if(!context.isNotValidNode)
+    			createNewVisualBlock(context, root);
+    		else
+    			context.isNotValidNode = false;
+		}
+    }
+    
+	
+	
+	/**
+     * Divides a subtree in a branch context and records the division, so it can be replayed
+     * in the next run, if the subtree isn't changed, and caches it for the equal subtrees of other pages
+     * @param root root of the subtree
+     * @param currentLevel node's current level in AreaTree
+     * @param cached true if the division should be cached
+     */
+    private void recordDivision(VipsBasedRunContext context, AreaImpl root, int currentLevel, boolean cached)
+    {
+    	boolean nonDividable = context.nonDividableNodes.contains(root);
+    	boolean docValueWasKnown = context.docValueIsKnown;
+    	int invalidations = context.featureCache.getInvalidationCount();
+    	VipsBasedRunContext branch = context.branch(root);
+    	branch.docValue = context.docValue;
+    	branch.docValueIsKnown = context.docValueIsKnown;
+    	
+    	divideNode(branch, root, currentLevel);
+    	
+    	//a known degree of coherence value comes from outside of the subtree, changes of the tree can't be replayed
+    	VipsBasedDivisionRecords.SubtreeDivision division = null;
+    	VipsBasedSubtreeCache.CachedDivision cachedDivision = null;
+    	if(!docValueWasKnown && context.featureCache.getInvalidationCount() == invalidations)
+    	{
+    		if(context.divisionRecords != null)
+    			division = context.divisionRecords.record(root, nonDividable, branch);
+    		Long fingerprint = cached ? context.fingerprints.get(root) : null;
+    		if(fingerprint != null)
+    			cachedDivision = context.subtreeCache.record(root, fingerprint, nonDividable, getSizeThreshold(context), branch);
+    	}
+    	context.docValue = branch.docValue;
+    	context.docValueIsKnown = branch.docValueIsKnown;
+    	
+    	int firstBlock = context.visualBlocksPool.size();
+    	int firstOperation = getOperationCount(context);
+    	context.join(branch);
+    	performSeparatorOperations(context, branch.separatorOperations);
+    	if(division != null || cachedDivision != null)
+    		context.addNestedDivision(root, division, cachedDivision, firstBlock, firstOperation);
+    }
+    
+    
+    
+    /**
+     * Replays a recorded division of an unchanged subtree instead of dividing it again
+     * @param root root of the subtree
+     * @return true if the division was replayed, false if there is no valid record
+     */
+    private boolean replayDivision(VipsBasedRunContext context, AreaImpl root)
+    {
+    	VipsBasedDivisionRecords.SubtreeDivision division = context.divisionRecords.getDivision(root);
+    	if(division == null || context.docValueIsKnown || division.nonDividable != context.nonDividableNodes.contains(root))
+    		return false;
+    	
+    	int firstBlock = context.visualBlocksPool.size();
+    	int firstOperation = getOperationCount(context);
+    	performReplay(context, context.divisionRecords.replay(division, context.nodeRanks));
+    	context.docValue = division.docValue;
+    	context.docValueIsKnown = division.docValueIsKnown;
+    	context.addNestedDivision(root, division, null, firstBlock, firstOperation);
+    	return true;
+    }
+    
+    
+    
+    /**
+     * Checks, if the division of a subtree should be taken from the subtree cache or cached
+     * @param root root of the subtree
+     * @return true if the subtree has a fingerprint and it matches the template of the run, if there is one
+     */
+    private boolean isCachedSubtree(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(context.subtreeCache == null)
+    		return false;
+    	Long fingerprint = context.fingerprints.get(root);
+    	if(fingerprint == null)
+    		return false;
+    	if(context.templateProfile == null)
+    		return true;
+    	Long path = context.subtreePaths.get(root);
+    	return path != null && context.templateProfile.isTemplateSubtree(path, fingerprint);
+    }
+    
+    
+    
+    /**
+     * Splices a cached division of an equal subtree of another page instead of dividing the subtree
+     * @param root root of the subtree
+     * @return true if the division was spliced, false if there is no cached division
+     */
+    private boolean replayCachedDivision(VipsBasedRunContext context, AreaImpl root)
+    {
+    	Long fingerprint = context.fingerprints.get(root);
+    	if(fingerprint == null || context.docValueIsKnown)
+    		return false;
+    	int subtreeSize = context.featureCache.get(root).getSubtreeSize();
+    	VipsBasedSubtreeCache.CachedDivision division = context.subtreeCache.get(fingerprint, subtreeSize,
+    			context.nonDividableNodes.contains(root), getSizeThreshold(context));
+    	if(division == null)
+    		return false;
+    	VipsBasedDivisionRecords.Replay replay = context.subtreeCache.replay(division, root, subtreeSize, context.nodeRanks);
+    	if(replay == null)
+    		return false;
+    	
+    	int firstBlock = context.visualBlocksPool.size();
+    	int firstOperation = getOperationCount(context);
+    	performReplay(context, replay);
+    	context.docValue = division.docValue;
+    	context.docValueIsKnown = division.docValueIsKnown;
+    	context.addNestedDivision(root, null, division, firstBlock, firstOperation);
+    	return true;
+    }
+    
+    
+    
+    /**
+     * Adds the visual blocks and performs the operations with separators of a replayed division
+     * @param replay replayed division
+     */
+    private void performReplay(VipsBasedRunContext context, VipsBasedDivisionRecords.Replay replay)
+    {
+    	for (int i = 0; i < replay.blockAreas.size(); i++)
+    	{
+    		VipsBasedVisualBlock visualBlock = createVisualBlock(replay.blockAreas.get(i));
+    		visualBlock.setDoc(replay.blockDocs.get(i));
+    		addVisualBlock(context, visualBlock);
+		}
+    	performSeparatorOperations(context, replay.operations);
+    }
+    
+    
+    
+    /**
+     * @return number of the operations with separators recorded in a branch context, 0 if they are performed immediately
+     */
+    private int getOperationCount(VipsBasedRunContext context)
+    {
+    	if(context.separatorOperations != null)
+    		return context.separatorOperations.size();
+    	else
+    		return 0;
+    }
+    
+    
+    
+	/**
+     * Checks, if children of the node are worth dividing in parallel
+     * @param root divided node
+     * @return true if the parallel division is enabled and at least two children have big enough subtrees
+     */
+    private boolean isForkable(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(context.forkJoinPool == null || !ForkJoinTask.inForkJoinPool())
+    		return false;
+    	
+    	int bigSubtrees = 0;
+    	for (Area child : root.getChildAreas())
+    	{
+    		if(context.featureCache.get((AreaImpl)child).getSubtreeSize() >= context.forkSubtreeSize)
+    			bigSubtrees++;
+    		if(bigSubtrees == 2)
+    			return true;
+		}
+    	return false;
+    }
+    
+    
+    
+    /**
+     * Divides children of the node in parallel. Every child is divided in its own branch context,
+     * big subtrees in other threads. The operations with separators recorded by the branches
+     * are performed after all the branches are joined in the same order as in the sequential division.
+     * @param root divided node
+     * @param currentLevel node's current level in AreaTree
+     */
+    private void divideChildrenInParallel(VipsBasedRunContext context, AreaImpl root, int currentLevel)
+    {
+    	List<Area> children = new ArrayList<Area>(root.getChildAreas());
+    	boolean[] validBefore = getChildrenValidity(context, children);
+    	List<DivisionTask> tasks = new ArrayList<DivisionTask>(children.size());
+    	boolean[] forked = new boolean[children.size()];
+    	
+    	//the records of the children are created in the cache of this context before any branch reads it
+    	for (int i = 0; i < children.size(); i++)
+    	{
+    		AreaImpl child = (AreaImpl) children.get(i);
+    		forked[i] = context.featureCache.get(child).getSubtreeSize() >= context.forkSubtreeSize;
+    		tasks.add(new DivisionTask(context.fork(child), child, ++currentLevel));
+		}
+    	for (int i = 0; i < tasks.size(); i++)
+    	{
+    		if(forked[i])
+    			tasks.get(i).fork();
+		}
+    	for (int i = 0; i < tasks.size(); i++)
+    	{
+    		if(!forked[i])
+    			tasks.get(i).invoke();
+		}
+    	for (int i = tasks.size() - 1; i >= 0; i--)
+    	{
+    		if(forked[i])
+    			tasks.get(i).join();
+		}
+    	
+    	for (DivisionTask task : tasks)
+    		context.join(task.context);
+    	
+    	//the separators of the node were reconfigured before the division of every child,
+    	//the child's validity may change by its division
+    	boolean[] validAfter = getChildrenValidity(context, children);
+    	boolean[] valid = validBefore;
+    	List<SeparatorOperation> operations = new ArrayList<SeparatorOperation>();
+    	for (int i = 0; i < tasks.size(); i++)
+    	{
+    		if(i > 0 && validBefore[i - 1] != validAfter[i - 1])
+    		{
+    			valid = Arrays.copyOf(valid, valid.length);
+    			valid[i - 1] = validAfter[i - 1];
+    		}
+    		operations.add(new SeparatorOperation(root, children, valid));
+    		operations.addAll(tasks.get(i).context.separatorOperations);
+		}
+    	performSeparatorOperations(context, operations);
+    }
+    
+    
+    
+    /**
+     * Performs recorded operations with separators, or records them again in a branch context
+     * @param operations recorded operations in the sequential order
+     */
+    private void performSeparatorOperations(VipsBasedRunContext context, List<SeparatorOperation> operations)
+    {
+    	if(context.separatorOperations != null)
+    	{
+    		context.separatorOperations.addAll(operations);
+    		return;
+    	}
+    	
+    	for (SeparatorOperation operation : operations)
+    	{
+    		if(operation.separator != null && operation.nodeRank != -1)
+    			addNodeSeparator(context, operation.nodeRank, operation.separator);
+    		else if(operation.separator != null)
+    			addDetectedSeparator(context, operation.separator);
+    		else
+    			reconfigureSeparators(context, operation.root, operation.children, operation.validChildren);
+		}
+    }
+    
+    
+    
+    /**
+     * Runs a task in the pool of the run, directly if the current thread is a worker of the pool
+     * @param task executed task
+     */
+    private void invokeInPool(VipsBasedRunContext context, ForkJoinTask<?> task)
+    {
+    	if(ForkJoinTask.getPool() == context.forkJoinPool)
+    		task.invoke();
+    	else
+    		context.forkJoinPool.invoke(task);
+    }
+    
+    
+    
+    /**
+     * Division of a subtree in a fork/join pool
+     */
+    private class DivisionTask extends RecursiveAction
+    {
+		private static final long serialVersionUID = 1L;
+		
+		private final VipsBasedRunContext context;
+    	private final AreaImpl root;
+    	private final int level;
+    	
+    	DivisionTask(VipsBasedRunContext context, AreaImpl root, int level)
+    	{
+    		this.context = context;
+    		this.root = root;
+    		this.level = level;
+    	}
+
+		@Override
+		protected void compute()
+		{
+			divideDomTree(context, root, level);
+		}
+    }
+    
+    
+    
+	/**
+     * Creates a new visual block
+     * @param root node of AreaTree, we want form to visual block
+     */
+    private void createNewVisualBlock(VipsBasedRunContext context, AreaImpl root)
+    {
+    	VipsBasedVisualBlock visualBlock = createVisualBlock(root);
+		
+		if(context.docValueIsKnown)
+		{
+			visualBlock.setDoc(context.docValue);
+			context.docValueIsKnown = false;
+		}
+		else
+		{
+			//this is for Vips rule 7
+			if(context.nonDividableNodes.contains(root))
+			{
+				visualBlock.setDoc(docEvaluation(context, root, 0.6f, 0.8f));
+				addVisualBlock(context, visualBlock);
+				return;
+			}
+			
+			visualBlock.setDoc(docEvaluation(context, root, 0f, 1f));
+		}
+		
+		addVisualBlock(context, visualBlock); //add visual block to pool
+	}
+
+    
+    
+    /**
+     * Adds a visual block with the evaluated degree of coherence to the pool and passes it to the block consumer
+     * @param visualBlock new visual block
+     */
+    private void addVisualBlock(VipsBasedRunContext context, VipsBasedVisualBlock visualBlock)
+    {
+    	context.visualBlocksPool.add(visualBlock);
+    	if(context.blockConsumer != null)
+    		context.blockConsumer.visualBlockExtracted(visualBlock, context.nestingDepth);
+    }
+
+    
+    
+    /**
+     * Creates a visual block of a node without the degree of coherence value
+     * @param root node of AreaTree forming the visual block
+     * @return new visual block
+     */
+    private VipsBasedVisualBlock createVisualBlock(AreaImpl root)
+    {
+    	VipsBasedVisualBlock visualBlock = new VipsBasedVisualBlock();
+		
+		if(root.getBoxes() != null && root.getBoxes().size() != 0)
+			visualBlock.setBlock(root.getBoxes().firstElement());
+		else
+			visualBlock.setBlock(null);
+		
+		visualBlock.setArea(root);
+		visualBlock.setDomNode(root);
+		return visualBlock;
+    }
+    
+    
+    
+    /**
+     * Evaluates degree of coherence of visual block
+     * @param root input visual block
+     * @param min minimum allowed doc
+     * @param max maximum allowed doc
+     * @result degree of coherence value in given range
+     */
+	private float docEvaluation(VipsBasedRunContext context, AreaImpl root, float min, float max) {
+		return context.docEvaluator.evaluate(root, min, max);
+	}
+
+	
+	
+	/**
+     * Is current node dividable?
+     * @param root input node of AreaTree
+     * @param currentLevel node's current level in AreaTree
+     * @result true if node is dividable, otherwise false
+     */
+	private boolean dividable(VipsBasedRunContext context, AreaImpl root, int currentLevel)
+    {
+    	if(currentLevel == startLevel) //root is the TOP block
+    		return true;
+    	else
+    	{
+    		if(context.nonDividableNodes.contains(root))
+    			return false;
+    		return !isVisualBlock(context, root);
+    	}
+    }
+    
+	
+	
+	/**
+     * Checks, if current node forms a visual block based on heuristic rules
+     * @param root input node of AreaTree
+     * @result true if node is visual block, otherwise false
+     */
+    private boolean isVisualBlock(VipsBasedRunContext context, AreaImpl root)
+    {
+    	switch (getTagCategory(context, root))
+    	{
+    		case INLINE:
+    			return isVisualInline(context, root);
+    		case TABLE:
+    			return isVisualTable(context, root);
+    		case TR:
+    			return isVisualTr(context, root);
+    		case TD:
+    			return isVisualTd(context, root);
+    		case P:
+    			return isVisualP(context, root);
+    		default:
+    			return isVisualOther(context, root);
+    	}
+    }
+
+    
+    
+	private boolean isVisualInline(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_4, isMetVipsRule4(context, root)))
+			return true;
+    	else if(countRule(context, Rule.VIPS_RULE_5, isMetVipsRule5(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_6, isMetVipsRule6(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_8, isMetVipsRule8(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_11, isMetVipsRule11(context, root)))
+    		return false;
+    	else
+    		return false;
+	}
+    
+	
+	
+    private boolean isVisualTable(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.IMPROVED_VIPS_RULE_3, isMetImprovedVipsRule3(context, root)))
+    	{
+    		if(printRules)
+    			System.out.println("IMPROVED VIPS RULE 3 MATCH!");
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_7, isMetVipsRule7(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_12, isMetVipsRule12(context, root)))
+    		return true;
+    	else
+    		return false;
+	}
+
+    
+    
+	private boolean isVisualTr(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_7, isMetVipsRule7(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_12, isMetVipsRule12(context, root)))
+    		return true;
+    	else
+    		return false;
+	}
+    
+	
+	
+    private boolean isVisualTd(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_4, isMetVipsRule4(context, root)))
+			return true;
+    	else if(countRule(context, Rule.VIPS_RULE_8, isMetVipsRule8(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_10, isMetVipsRule10(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_12, isMetVipsRule12(context, root)))
+    		return true;
+    	else
+    		return false;
+	}
+    
+    
+    
+    private boolean isVisualP(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_4, isMetVipsRule4(context, root)))
+			return true;
+    	else if(countRule(context, Rule.VIPS_RULE_5, isMetVipsRule5(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_6, isMetVipsRule6(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_8, isMetVipsRule8(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_11, isMetVipsRule11(context, root)))
+    		return false;
+    	else
+    		return false;
+	}
+    
+    
+    
+    private boolean isVisualOther(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(countRule(context, Rule.VIPS_RULE_1, isMetVipsRule1(context, root)))
+    	{
+    		context.isNotValidNode = true;
+    		return false;
+    	}
+    	else if(countRule(context, Rule.VIPS_RULE_2, isMetVipsRule2(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_3, isMetVipsRule3(context, root)))
+			return false;
+    	else if(countRule(context, Rule.VIPS_RULE_4, isMetVipsRule4(context, root)))
+			return true;
+    	else if(countRule(context, Rule.VIPS_RULE_6, isMetVipsRule6(context, root)))
+    		return false;
+    	else if(countRule(context, Rule.VIPS_RULE_8, isMetVipsRule8(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_9, isMetVipsRule9(context, root)))
+    		return true;
+    	else if(countRule(context, Rule.VIPS_RULE_11, isMetVipsRule11(context, root)))
+    		return false;
+    	else
+    		return false;
+	}
+
+     //////////////////////////////////////////
+     // SECTION OF HEURISTIC RULES
+     //////////////////////////////////////////
+    
+    
+    
+	private boolean isMetVipsRule1(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/* If the DOM node is not a valid node and it has no valid children, then this node cannot be divided and will be cut. */
+		
+		if(printRules)
+			System.out.println("Processing VIPS Rule 1: " + root.toString());
+		
+    	//the DOM node is not a valid node and it has no valid children
+    	return !context.featureCache.get(root).isValid();
+    }
+    
+	
+	
+    private boolean isMetVipsRule2(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* If the DOM node has only one valid child and the child is not a text node, then divide this node. */
+
+		if(printRules)
+			System.out.println("Processing VIPS Rule 2: " + root.toString());
+    	
+    	//has only one child
+    	if(root.getChildCount() == 1)
+    	{
+    		VipsBasedAreaFeatures childNode = context.featureCache.get((AreaImpl)root.getChildArea(0));
+    		
+    		//the child is Valid
+    		if(childNode.isVisible()) 
+    			//the child is not a text node
+    			if(childNode.getFirstBoxType() != Box.Type.TEXT_CONTENT)
+    				return true;
+    	}	
+		return false;
+    }
+    
+    
+    
+    //removed rule
+    private boolean isMetVipsRule3(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/*	
+    	 	If the DOM node is the root node of the sub-DOM tree (corresponding to the block),
+    		and there is only one sub DOM tree corresponding to this block, divide this node.
+    	 */
+
+		if(printRules)
+			System.out.println("Processing VIPS Rule 3: " + root.toString());
+    	
+    	return false;
+    }
+    
+    
+    
+    private boolean isMetVipsRule4(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			If all of the child nodes of the DOM node are text nodes or virtual text nodes, do not divide the node.  
+			If the font size and font weight of all these child nodes are same, set the DoC of the extracted block to 1.
+			Else if only the font size isn't same for all children proceed improvedVipsRule1 or improvedVipsRule2.
+			Else if only the font weight isn't same for all children set DoC of the extracted block to 0.9.
+		*/
+
+		if(printRules)
+			System.out.println("Processing VIPS Rule 4: " + root.toString());
+    	
+    	context.docValue = 1f;
+    	
+    	if(root.getChildCount() == 0)
+    		return false;
+    	
+    	//font size and font weight of the leading text children are compared with the first child
+    	VipsBasedAreaFeatures features = context.featureCache.get(root);
+    	boolean proceedImprovedVipsRules = features.isFontSizeChanged();
+    	if(features.isFontSizeChanged() || features.isFontWeightChanged())
+    		context.docValue = 0.9f;
+    	
+    	//if some child node isn't a text node even a virtual text node
+    	if(features.getLeadingTextChildren() < root.getChildCount())
+    		return false;
+    	
+    	if(proceedImprovedVipsRules)
+    	{
+    		if(countRule(context, Rule.IMPROVED_VIPS_RULE_1, isMetImprovedVipsRule1(context, root)))
+    		{
+        		context.isNotValidNode = true;
+        		return true;
+        	}
+    		else if(countRule(context, Rule.IMPROVED_VIPS_RULE_2, isMetImprovedVipsRule2(context, root)))
+    		{
+        		context.isNotValidNode = true;
+        		return true;
+        	}
+    	}
+    	
+    	context.docValueIsKnown = true;
+    	return true;
+    }
+    
+    
+    
+    private boolean isMetVipsRule5(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/*	
+    	 	If one of the child nodes of the DOM node is line-break node, then divide this DOM node.
+    	 */
+		if(printRules)
+			System.out.println("Processing VIPS Rule 5: " + root.toString());
+    	
+    	return context.featureCache.get(root).hasLineBreakChild();
+    }
+    
+    
+    
+    private boolean isMetVipsRule6(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/*	
+    	 	Original VIPS rule:
+    	 	If one of the child nodes of the DOM node has HTML tag <HR>, then divide this DOM node.
+    	 	Improved VIPS rule:
+    	 	If a node contains a child whose tag is HR, BR or any of line-break nodes which
+			has no valid children, then divide this DOM node.
+    	 */
+		if(printRules)
+			System.out.println("Processing VIPS Rule 6: " + root.toString());
+    	
+    	//only the first child, which has a tag and isn't inline, is checked
+    	int childIndex = context.featureCache.get(root).getFirstTaggedLineBreakChild();
+    	if(childIndex == -1)
+    		return false;
+    	
+    	AreaImpl child = (AreaImpl) root.getChildArea(childIndex);
+    	TagCategory childCategory = getTagCategory(context, child);
+    	if(childCategory == TagCategory.HR)
+    		return true;
+    	else if(childCategory == TagCategory.BR)
+    		return true;
+    	else if(child.getChildCount() == 0)
+    		return true;
+    	else
+    	{
+			for (Area grandChild : child.getChildAreas())
+			{
+				//if grandChild is valid
+				if(!isMetVipsRule1(context, (AreaImpl)grandChild))
+					return false;
+			}
+			return true;
+		}
+    }
+    
+    
+    
+    private boolean isMetVipsRule7(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/*	
+    	 	If the background color of this node is different from one of its children’s, divide this node and at the 
+			same time, the child node with different background color will not be divided in this round.  
+			Set the DoC value (0.6 - 0.8) for the child node. 
+    	 */
+		if(printRules)
+			System.out.println("Processing VIPS Rule 7: " + root.toString());
+    	
+    	boolean ruleMet = false;
+    	
+    	for (Area child : root.getChildAreas())
+    	{
+    		if(child.getBackgroundColor() != null && root.getBackgroundColor() != null)
+    		{
+    			if(!child.getBackgroundColor().equals(root.getBackgroundColor()))
+	    		{
+	    			ruleMet = true;
+	    			context.nonDividableNodes.add((AreaImpl)child);
+	    		}
+    		}
+    		else if((child.getBackgroundColor() == null && root.getBackgroundColor() != null) || (child.getBackgroundColor() != null && root.getBackgroundColor() == null))
+    		{
+    			ruleMet = true;
+    			context.nonDividableNodes.add((AreaImpl)child);
+    		}
+		}
+    	
+    	if(ruleMet)
+    		return true;
+    	else
+    		return false;
+    }
+    
+    
+    
+    private boolean isMetVipsRule8(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			If  the  node  has  at  least  one  text  node  child  or  at  least  one  virtual  text  node  child,  and  the  node's  
+			relative size is smaller than a threshold, then the node cannot be divided. 
+			Set the DoC value from 0.5 to 0.8.
+		*/
+		if(printRules)
+			System.out.println("Processing VIPS Rule 8: " + root.toString());
+    	
+    	//if some child node is a text node or virtual text node
+    	if(context.featureCache.get(root).hasTextChild() && isSmallerThanThreshold(context, root))
+    	{
+			context.docValue = docEvaluation(context, root, 0.8f, 0.5f);
+	    	context.docValueIsKnown = true;
+			return true;
+		}
+    	return false;
+    }
+
+    
+    
+	private boolean isMetVipsRule9(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			If the child of the node with maximum size is smaller than a threshold (relative size), do not divide this node.
+		*/
+		if(printRules)
+			System.out.println("Processing VIPS Rule 9: " + root.toString());
+    	
+    	int maxI = context.featureCache.get(root).getMaxSizeChild();
+    	
+    	if(root.getChildCount() != 0 && isSmallerThanThreshold(context, (AreaImpl)root.getChildArea(maxI)))
+    		return true;
+    	else
+    		return false;
+    }
+    
+	
+	
+    private boolean isMetVipsRule10(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			If previous sibling node has not been divided, do not divide this node.
+		*/
+		if(printRules)
+			System.out.println("Processing VIPS Rule 10: " + root.toString());
+    	
+    	//the pool contains visual blocks, not areas, so the rule is always met; this behaviour of the original
+    	//implementation is kept, the parallel division depends on it as the pool of a branch lacks the sibling blocks
+    	if(!context.visualBlocksPool.contains(root.getPreviousSibling()))
+    		return true;
+    	else
+    		return false;
+    }
+    
+    
+    
+    private boolean isMetVipsRule11(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			Divide this node.
+		*/
+		if(printRules)
+			System.out.println("Processing VIPS Rule 11: " + root.toString());
+    	
+    	return true;
+    }
+    
+    
+    
+    private boolean isMetVipsRule12(VipsBasedRunContext context, AreaImpl root)
+    {	
+    	/* 	
+			Do not divide this node.
+		*/
+		if(printRules)
+			System.out.println("Processing VIPS Rule 12: " + root.toString());
+
+    	return true;
+    }
+    
+    private boolean isMetImprovedVipsRule1(VipsBasedRunContext context, AreaImpl root)
+    {
+		/*
+		  	If one of the child nodes has bigger font size than its previous siblings, divide node
+			into two blocks. Put the nodes before the child node with bigger font size into the
+			first block, and put the remaining nodes to the second block.
+		 */
+    	Area child = null;
+    	
+    	for (int i = 0; i < root.getChildCount(); i++)
+    	{
+    		child = root.getChildArea(i);
+    		
+    		//first child doesn't have previous sibling
+			if(child.getPreviousSibling() != null)
+			{
+				if(child.getFontSize() > child.getPreviousSibling().getFontSize())
+				{
+					AreaImpl newNode1 = new AreaImpl(0,0,0,0);
+					AreaImpl newNode2 = new AreaImpl(0,0,0,0);
+					newNode1.addBox(root.getBoxes().get(0));
+					newNode2.addBox(root.getBoxes().get(0));
+					List<Area> selected1 = new ArrayList<Area>();
+					List<Area> selected2 = new ArrayList<Area>();
+					
+					for (int j = 0; j < root.getChildCount(); j++)
+					{
+						if(j < i)
+							selected1.add(root.getChildArea(j));
+						else
+							selected2.add(root.getChildArea(j));
+					}
+					
+					for (Area subArea : selected1)
+					{
+						newNode1.appendChild(subArea);
+					}
+					for (Area subArea : selected2)
+					{
+						newNode2.appendChild(subArea);
+					}
+					
+					updateBounds(newNode1);
+					updateBounds(newNode2);
+					context.featureCache.invalidate(newNode1);
+					context.featureCache.invalidate(newNode2);
+					
+					root.appendChild(newNode1);
+					root.appendChild(newNode2);
+					context.featureCache.invalidate(root);
+					
+					collectActualSeparators(context, root);
+					
+					createNewVisualBlock(context, newNode1);
+					createNewVisualBlock(context, newNode2);
+					reconfigureSeparators(context, root);
+					
+					return true;
+				}
+			}
+		}
+    	return false;
+	}
+    
+    
+    
+    private boolean isMetImprovedVipsRule2(VipsBasedRunContext context, AreaImpl root)
+    {
+		/*
+		  	If the first child of the node has bigger font size than the remaining children,
+		  	divide node into two blocks, one in which is the first child with bigger font size, and the other
+			contains remaining children.
+		 */
+    	
+    	Area firstChild = null;
+    	Area child = null;
+    	Boolean ruleIsMet = true;
+    	List<Area> selected = new ArrayList<Area>();
+    	
+    	if(root.getChildCount() <= 1)
+    		return false;
+    	
+    	for (int i = 0; i < root.getChildCount(); i++)
+    	{
+    		child = root.getChildArea(i);
+    		
+    		if(i == 0)
+    			firstChild = child;
+    		else
+    		{
+    			if(firstChild.getFontSize() <= child.getFontSize())
+    				ruleIsMet = false;
+    			
+    			selected.add(child);
+			}
+    	}
+    	
+    	if(ruleIsMet)
+    	{
+    		AreaImpl newNode = new AreaImpl(0,0,0,0);
+    		newNode.addBox(root.getBoxes().get(0));
+    		
+    		for (Area subArea : selected)
+			{
+				newNode.appendChild(subArea);
+			}
+    		
+    		updateBounds(newNode);
+    		context.featureCache.invalidate(newNode);
+    		
+    		root.appendChild(newNode);
+    		context.featureCache.invalidate(root);
+    		collectActualSeparators(context, root);
+    		
+    		createNewVisualBlock(context, (AreaImpl)firstChild);
+    		createNewVisualBlock(context, newNode);
+    		
+    		reconfigureSeparators(context, root);
+
+    		return true;
+    	}
+    	return false;
+	}
+    
+    
+    
+    private boolean isMetImprovedVipsRule3(VipsBasedRunContext context, AreaImpl root)
+    {
+    	/*
+		  	If node is a table and some of its columns have different background color than the
+			others, divide the table into the number separate columns and construct a visual block for each piece.
+		 */
+		AreaImpl row = null;
+		AreaImpl firstRow = null;
+		AreaImpl cell = null;
+		AreaImpl newNode = null;
+		Boolean differentColumns = false;
+		Boolean divideTable = false;
+		Boolean firstIsHead = false;
+		List<AreaImpl> rows = new ArrayList<AreaImpl>();
+		List<Color> completedColumns = new ArrayList<Color>();
+		Color firstColor = null;
+		
+		if(root.getChildArea(0) != null && context.tagClassifier.classify(root.getChildArea(0).getBoxes().get(0)) != TagCategory.NONE)
+		{
+			if(context.tagClassifier.classify(root.getChildArea(0).getBoxes().get(0)) == TagCategory.THEAD && root.getChildArea(0).getChildArea(0) != null)
+			{
+				firstRow = (AreaImpl)root.getChildArea(0).getChildArea(0);
+				firstIsHead = true;
+			}
+			else if(context.tagClassifier.classify(root.getChildArea(0).getBoxes().get(0)) == TagCategory.THEAD && root.getChildArea(0).getChildArea(0) != null)
+			{
+				firstRow = (AreaImpl)root.getChildArea(0).getChildArea(0);
+			}
+			else
+				return false;
+		}
+		
+		for (int i = 0; i < firstRow.getChildCount(); i++)
+		{
+			cell = (AreaImpl)firstRow.getChildArea(i);
+			
+			if(cell.getNextSibling() != null)
+				if(!cell.hasSameBackground((AreaImpl)cell.getNextSibling()))
+					differentColumns = true;
+		}
+			
+		if(differentColumns)
+		{		
+			for (Area tr : root.getChildArea(0).getChildAreas())
+			{
+				rows.add((AreaImpl)tr);
+			}
+			if(firstIsHead)
+				if(root.getChildArea(1) != null)
+					for (Area tr : root.getChildArea(1).getChildAreas())
+					{
+						rows.add((AreaImpl)tr);
+					}
+			
+			for (int i = 0; i < firstRow.getChildCount(); i++)
+			{
+				for (int j = 0; j < rows.size(); j++)
+				{
+					row = rows.get(j);
+					cell = (AreaImpl)row.getChildArea(i);
+					
+					if(row.getNextSibling() != null && row.getNextSibling().getChildArea(i) != null)
+					{
+						if(!cell.hasSameBackground((AreaImpl)row.getNextSibling().getChildArea(i)))
+							break;
+					}
+					else
+					{
+						completedColumns.add(cell.getBackgroundColor());
+						break;
+					}
+				}
+			}
+			
+			for (Color color : completedColumns)
+			{
+				if(color == completedColumns.get(0))
+					firstColor = color;
+				else
+				{
+					if(color != null && firstColor != null)
+					{
+						if(!color.equals(firstColor))
+						{
+							divideTable = true;
+							break;
+						}
+					}
+					else if((color == null && firstColor != null) || (color != null && firstColor == null))
+					{
+						divideTable = true;
+						break;
+					}
+				}
+			}
+			if(divideTable)
+			{
+				List<AreaImpl> column = null;
+				List<List<AreaImpl>> columns = new ArrayList<List<AreaImpl>>();
+				for (int i = 0; i < firstRow.getChildCount(); i++)
+				{
+					column = new ArrayList<AreaImpl>();
+					for (int j = 0; j < rows.size(); j++)
+					{
+						row = rows.get(j);
+						column.add((AreaImpl)row.getChildArea(i));
+					}
+					columns.add(column);
+				}
+				
+				List<AreaImpl> newNodes = new ArrayList<AreaImpl>();
+				for (List<AreaImpl> col : columns)
+				{
+						newNode = new AreaImpl(0,0,0,0);
+			    		newNode.addBox(root.getBoxes().get(0));
+			    		
+			    		for (AreaImpl subArea : col)
+						{
+							newNode.appendChild(subArea);
+						}
+			    		
+			    		updateBounds(newNode);
+			    		context.featureCache.invalidate(newNode);
+			    		
+			    		newNodes.add(newNode);
+			    		collectActualSeparators(context, newNode);
+				}
+				
+				root.removeAllChildren();
+				context.featureCache.invalidate(root);
+				for (AreaImpl col : newNodes)
+				{
+					root.appendChild(col);
+					context.featureCache.invalidate(root);
+					createNewVisualBlock(context, col);
+				}
+				
+	    		collectActualSeparators(context, root);
+	    		reconfigureSeparators(context, root);
+
+	    		return true;
+			}
+		}	
+		return false;
+	}
+    
+	//////////////////////////////////////////
+	// END OF HEURISTIC RULES SECTION
+	//////////////////////////////////////////
+    
+    
+    
+    /**
+     * Check, if current node is smaller than threshold
+     * @param root current node
+     * @result true if current node is smaller than threshold, false otherwise
+     */
+    private boolean isSmallerThanThreshold(VipsBasedRunContext context, AreaImpl root)
+    {
+    	double nodeDimension = root.getWidth() * root.getHeight();
+    	double threshold = getSizeThreshold(context);
+    	
+    	//if node dimension is smaller than threshold
+    	if(Double.compare(nodeDimension, threshold) <= 0)
+    		return true;
+    	else    	
+    		return false;
+	}
+    
+    
+    
+    /**
+     * @return dimension of the nodes considered small by the rules, it depends on the page dimension
+     */
+    private double getSizeThreshold(VipsBasedRunContext context)
+    {
+    	double pageDimension = context.pageRoot.getWidth() * context.pageRoot.getHeight();
+    	return pageDimension * (context.pageThreshold/100);
+    }
+    
+    
+    
+    /**
+     * Returns category of the current node's tag
+     * @param root current node
+     * @result category of the tag of the node's first box, NONE if the node has no box
+     */
+    private TagCategory getTagCategory(VipsBasedRunContext context, AreaImpl root)
+    {
+    	return context.featureCache.get(root).getTagCategory();
+    }
+    
+    
+    
+    /**
+     * Phase of visual separators detection - only ranks the nodes of input AreaTree,
+     * the separators of a node are detected when the division reaches the node
+     * @param root node of input AreaTree
+     */
+    private void rankNodes(VipsBasedRunContext context, AreaImpl root)
+    {
+    	context.nodeRanks.put(root, context.nodeRanks.size());
+    	
+    	for (int i = 0; i < root.getChildCount(); i++)
+		{
+			rankNodes(context, (AreaImpl) root.getChildArea(i));
+		}
+    }
+    
+    
+    
+    /**
+     * Detects separators of a node of input AreaTree, which weren't detected yet.
+     * It has to be called before the rules change the children of the node.
+     * @param root node of input AreaTree
+     */
+    private void detectNodeSeparators(VipsBasedRunContext context, AreaImpl root)
+    {
+    	Integer rank = context.nodeRanks.get(root);
+    	if(rank == null || !context.detectedNodes.add(root))
+    		return;
+    	
+    	for (VipsBasedSeparator separator : findActualSeparators(root))
+    	{
+    		if(context.separatorOperations != null)
+    			context.separatorOperations.add(new SeparatorOperation(separator, rank));
+    		else
+    			addNodeSeparator(context, rank, separator);
+		}
+    }
+    
+    
+    
+    /**
+     * Collects separators on actual level of tree
+     * @param root node of input AreaTree
+     */
+    void collectActualSeparators(VipsBasedRunContext context, AreaImpl root)
+    {
+    	for (VipsBasedSeparator separator : findActualSeparators(root))
+    		addDetectedSeparator(context, separator);
+    }
+    
+    
+    
+    /**
+     * Finds separators on actual level of tree
+     * @param root node of input AreaTree
+     * @return horizontal separators followed by vertical ones
+     */
+    private List<VipsBasedSeparator> findActualSeparators(AreaImpl root)
+    {
+    	VipsBasedSeparatorSet actualLevelSeparators = new VipsBasedSeparatorSet(root);
+    	List<VipsBasedSeparator> result = new ArrayList<VipsBasedSeparator>();
+    	
+    	for (Separator separator : actualLevelSeparators.getHorizontal())
+    	{
+    		//System.out.println("Horizontal separator");
+    		result.add(new VipsBasedSeparator(separator));
+		}
+    	for (Separator separator : actualLevelSeparators.getVertical())
+    	{
+    		//System.out.println("Vertical separator");
+    		result.add(new VipsBasedSeparator(separator));
+		}
+    	return result;
+    }
+    
+    
+    
+    /**
+     * Sort detected separators ascending by weight
+     */
+    void sortSeparatorsAscending(VipsBasedRunContext context)
+    {
+    	//the store is kept for the filtering, which follows
+    	context.separatorStore = new VipsBasedSeparatorStore(context.detectedSeparators);
+    	context.separatorStore.sortByWeight();
+    	context.separatorStore.copyTo(context.detectedSeparators);
+    }
+    
+    
+    
+    /**
+     * Check every detected separator if it separates only visual blocks
+     */
+    void filterNonVisualSeparators(VipsBasedRunContext context)
+    {
+    	VipsBasedSeparatorStore separators = context.separatorStore;
+    	if(separators == null)
+    		separators = new VipsBasedSeparatorStore(context.detectedSeparators);
+    	context.separatorStore = null;
+    	
+    	//adjacent areas are checked and cleared only once, by their ids
+    	boolean[] isAreaVisual = new boolean[separators.getAreaCount()];
+    	boolean[] isAreaCleared = new boolean[separators.getAreaCount()];
+    	for (int i = 0; i < separators.getAreaCount(); i++)
+    		isAreaVisual[i] = context.visualBlocksPool.containsArea(separators.getArea(i));
+    	
+    	boolean[] retained = new boolean[separators.size()];
+    	for (int i = 0; i < separators.size(); i++)
+    	{
+    		int area1 = separators.getArea1(i);
+    		int area2 = separators.getArea2(i);
+			
+			if(area1 >= 0 && area2 >= 0 && area1 != area2 && isAreaVisual[area1] && isAreaVisual[area2])
+			{
+				//prepare separator for tree reconstruction process
+				removeAreasChildNodes(context, separators, area1, isAreaCleared);
+				removeAreasChildNodes(context, separators, area2, isAreaCleared);
+				separators.getSeparator(i).invalidateWeight();
+				if(!isIncorectHSeparator(separators, i))
+				{
+					retained[i] = true;
+					continue;
+				}
+			}
+			
+			context.separatorIndex.remove(separators.getSeparator(i));
+		}
+    	separators.retain(retained);
+    	separators.copyTo(context.detectedSeparators);
+    }
+    
+    
+    
+    /**
+     * Checks incorrect HSeparators
+     * @param separator checked detected separator
+     * @return true if the separator is incorrect and has to be removed, false otherwise
+     */
+    private boolean isIncorectHSeparator(VipsBasedSeparatorStore separators, int separator)
+    {
+    	int area1 = separators.getArea1(separator);
+    	int area2 = separators.getArea2(separator);
+    	int lengthArea1 = separators.getAreaX2(area1) - separators.getAreaX1(area1);
+    	
+    	if(separators.getType(separator) == Separator.HORIZONTAL)
+    	{
+    		if((separators.getAreaX1(area1) - separators.getAreaX2(area2)) > (lengthArea1))
+    			return true;
+    		else if((separators.getAreaX1(area2) - separators.getAreaX2(area1)) > (lengthArea1))
+    			return true;
+    	}
+    	return false;
+	}
+
+    
+    
+    /**
+     * Removing useless child nodes from an area surrounding detected separators
+     * @param separators stored detected separators
+     * @param area id of the area
+     * @param isAreaCleared flags of the areas, whose child nodes were already removed
+     */
+	private void removeAreasChildNodes(VipsBasedRunContext context, VipsBasedSeparatorStore separators, int area, boolean[] isAreaCleared)
+    {
+		if(isAreaCleared[area])
+			return;
+		isAreaCleared[area] = true;
+		
+    	AreaImpl root = separators.getArea(area);
+    	//keep the children for the case the granularity condition isn't met
+    	for (VipsBasedVisualBlock visualBlock : context.visualBlocksPool.getBlocks(root))
+    		visualBlock.preserveDomNodeChildren();
+    	root.removeAllChildren();
+    	context.featureCache.invalidate(root);
+    	//weights of all the separators adjacent to changed area need to be computed again
+    	for (VipsBasedSeparator adjacentSeparator : context.separatorIndex.getSeparators(root))
+    		adjacentSeparator.invalidateWeight();
+    }
+    
+	
+	
+	/**
+     * Granularity condition check - 
+     * finds a leaf nodes and on every leaf node checks
+     * the granularity condition
+     * @param root node if input AreaTree
+     */
+    private AreaImpl processLeafNodes(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(root.getChildCount() != 0)
+    	{
+    		//Non-leaf node
+    		for (int i = 0; i < root.getChildCount(); i++)
+    			processLeafNodes(context, (AreaImpl) root.getChildArea(i));
+    	}
+    	else
+    	{
+    		//Leaf node
+    		VipsBasedVisualBlock visualBlock = context.visualBlocksPool.getBlock(root);
+			if(visualBlock != null && Float.compare(visualBlock.getDoc(), context.pdocValue) <= 0)
+			{
+				for (Area child : visualBlock.restoreDomNodeChildren())
+				{
+					root.appendChild(child);
+				}
+				context.featureCache.invalidate(root);
+				
+				VipsBasedOperator divideDomTree = createNestedOperator(context);
+				divideDomTree.apply(null, root);
+			}
+		}
+    	
+    	return root;
+    }
+    
+    
+    
+    /**
+     * Granularity condition check with the repeated division of the leaf nodes in parallel
+     * @param root node of input AreaTree
+     * @return false if the leaf nodes weren't processed and they should be processed sequentially
+     */
+    private boolean processLeafNodesInParallel(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(context.forkJoinPool == null)
+    		return false;
+    	
+    	List<AreaImpl> leaves = getLeavesToRefine(context, root);
+    	if(leaves == null || leaves.size() < 2)
+    		return false;
+    	
+    	refineLeafNodesInParallel(context, leaves);
+    	return true;
+    }
+    
+    
+    
+    /**
+     * Finds leaf nodes, which don't fulfil the granularity condition
+     * @param root node of input AreaTree
+     * @return leaf nodes in the order of their processing, null if their subtrees
+     * after appending of the former children aren't disjoint, so they can't be divided in parallel
+     */
+    private List<AreaImpl> getLeavesToRefine(VipsBasedRunContext context, AreaImpl root)
+    {
+    	Set<Area> usedNodes = Collections.newSetFromMap(new IdentityHashMap<Area, Boolean>());
+    	List<AreaImpl> leaves = new ArrayList<AreaImpl>();
+    	findLeavesToRefine(context, root, usedNodes, leaves);
+    	
+    	for (AreaImpl leaf : leaves)
+    	{
+    		for (Area child : context.visualBlocksPool.getBlock(leaf).getDomNodeChildren())
+    		{
+    			if(!addSubtreeNodes(child, usedNodes))
+    				return null;
+			}
+		}
+    	return leaves;
+    }
+    
+    
+    
+    private void findLeavesToRefine(VipsBasedRunContext context, AreaImpl root, Set<Area> usedNodes, List<AreaImpl> leaves)
+    {
+    	usedNodes.add(root);
+    	if(root.getChildCount() != 0)
+    	{
+    		for (int i = 0; i < root.getChildCount(); i++)
+    			findLeavesToRefine(context, (AreaImpl) root.getChildArea(i), usedNodes, leaves);
+    	}
+    	else
+    	{
+    		VipsBasedVisualBlock visualBlock = context.visualBlocksPool.getBlock(root);
+    		if(visualBlock != null && Float.compare(visualBlock.getDoc(), context.pdocValue) <= 0)
+    			leaves.add(root);
+    	}
+    }
+    
+    
+    
+    /**
+     * @return false if some node of the subtree is already used
+     */
+    private boolean addSubtreeNodes(Area root, Set<Area> usedNodes)
+    {
+    	if(!usedNodes.add(root))
+    		return false;
+    	for (Area child : root.getChildAreas())
+    	{
+    		if(!addSubtreeNodes(child, usedNodes))
+    			return false;
+		}
+    	return true;
+    }
+    
+    
+    
+    /**
+     * Appends the former children to the leaf nodes and divides the leaf nodes again in parallel.
+     * The subtrees of the leaf nodes have to be disjoint.
+     * @param leaves leaf nodes, which don't fulfil the granularity condition
+     */
+    private void refineLeafNodesInParallel(VipsBasedRunContext context, List<AreaImpl> leaves)
+    {
+    	for (AreaImpl leaf : leaves)
+    	{
+    		for (Area child : context.visualBlocksPool.getBlock(leaf).restoreDomNodeChildren())
+			{
+				leaf.appendChild(child);
+			}
+			context.featureCache.invalidate(leaf);
+		}
+    	invokeInPool(context, new LeafRefinementTask(context, leaves, 0, leaves.size()));
+    }
+    
+    
+    
+    /**
+     * Creates an operator for the repeated division of a leaf node
+     */
+    private VipsBasedOperator createNestedOperator(VipsBasedRunContext context)
+    {
+    	VipsBasedOperator operator = new VipsBasedOperator(context.pdocValue);
+    	operator.setForkJoinPool(context.forkJoinPool);
+    	operator.setForkSubtreeSize(context.forkSubtreeSize);
+    	//the leaf nodes aren't pages of the template, so the cache of the template profile isn't used for them
+    	if(context.templateProfile == null)
+    		operator.setSubtreeCache(context.subtreeCache);
+    	operator.setBlockConsumer(context.blockConsumer);
+    	operator.nestingDepth = context.nestingDepth + 1;
+    	operator.parentMetrics = context.metrics;
+    	return operator;
+    }
+    
+    
+    
+    /**
+     * Repeated division of a range of leaf nodes in a fork/join pool
+     */
+    private class LeafRefinementTask extends RecursiveAction
+    {
+		private static final long serialVersionUID = 1L;
+		
+		private final VipsBasedRunContext context;
+		private final List<AreaImpl> leaves;
+    	private final int from;
+    	private final int to;
+    	
+    	LeafRefinementTask(VipsBasedRunContext context, List<AreaImpl> leaves, int from, int to)
+    	{
+    		this.context = context;
+    		this.leaves = leaves;
+    		this.from = from;
+    		this.to = to;
+    	}
+
+		@Override
+		protected void compute()
+		{
+			if(to - from == 1)
+			{
+				VipsBasedOperator divideDomTree = createNestedOperator(context);
+				divideDomTree.apply(null, leaves.get(from));
+			}
+			else
+			{
+				int middle = (from + to) / 2;
+				invokeAll(new LeafRefinementTask(context, leaves, from, middle), new LeafRefinementTask(context, leaves, middle, to));
+			}
+		}
+    }
+    
+    
+    
+    /**
+     * Reconfiguring of detected separators
+     * @param root node if input AreaTree
+     */
+    void reconfigureSeparators(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(context.separatorOperations != null)
+    	{
+    		//branch context, the separators will be reconfigured after the branch is joined
+    		List<Area> children = new ArrayList<Area>(root.getChildAreas());
+    		context.separatorOperations.add(new SeparatorOperation(root, children, getChildrenValidity(context, children)));
+    	}
+    	else
+    		reconfigureSeparators(context, root, root.getChildAreas(), null);
+    }
+    
+    
+    
+    /**
+     * Reconfiguring of detected separators adjacent to the node
+     * @param root node of input AreaTree
+     * @param children children of the node
+     * @param validChildren validity of the children, null if it should be checked now
+     */
+    private void reconfigureSeparators(VipsBasedRunContext context, AreaImpl root, List<Area> children, boolean[] validChildren)
+    {
+    	List<VipsBasedSeparator> associatedSeparators = getAssociatedSeparators(context, root);
+    	Area child = null;
+    	Area leastDistantChild = null;
+    	int area1Distance = 0;
+    	int area2Distance = 0;
+    	int shortestDistance = 0;
+    	boolean separatorReconfigured = false;
+    	boolean area1Reconfigured = false;
+    	
+    	for (VipsBasedSeparator actualSeparator : associatedSeparators)
+    	{
+    		leastDistantChild = null;
+    		area1Distance = 0;
+    		area2Distance = 0;
+    		shortestDistance = 0;
+    		area1Reconfigured = false;
+    		separatorReconfigured = false;
+			
+    		for (int i = 0; i < children.size(); i++)
+			{
+    			child = children.get(i);
+    			if(validChildren != null ? !validChildren[i] : !isValidNode(context, (AreaImpl)child))
+    				continue;
+    			
+				if(actualSeparator.getType() == Separator.HORIZONTAL)
+				{
+					area1Distance = Math.abs(actualSeparator.getY1() - child.getY2());
+					area2Distance = Math.abs(actualSeparator.getY2() - child.getY1());
+				}
+				else if(actualSeparator.getType() == Separator.VERTICAL)
+				{
+					area1Distance = Math.abs(actualSeparator.getX1() - child.getX2());
+					area2Distance = Math.abs(actualSeparator.getX2() - child.getX1());
+				}
+				
+				if(area1Distance < 2)
+				{
+					separatorReconfigured = true;
+					actualSeparator.setArea1((AreaImpl)child);
+					break;
+				}
+				else if(area2Distance < 2)
+				{
+					separatorReconfigured = true;
+					actualSeparator.setArea2((AreaImpl)child);
+					break;
+				}
+				else
+				{
+					if(i == 0) //first child
+					{
+						leastDistantChild = child;
+						if(area1Distance < area2Distance)
+						{
+							shortestDistance = area1Distance;
+							area1Reconfigured = true;
+						}
+						else
+						{
+							shortestDistance = area2Distance;
+							area1Reconfigured = false;
+						}
+					}
+					else
+					{
+						if(area1Distance < area2Distance)
+						{
+							if(area1Distance < shortestDistance)
+							{
+								leastDistantChild = child;
+								shortestDistance = area1Distance;
+								area1Reconfigured = true;
+							}
+						}
+						else
+						{
+							if(area2Distance < shortestDistance)
+							{
+								leastDistantChild = child;
+								shortestDistance = area2Distance;
+								area1Reconfigured = false;
+							}
+						}
+					}
+				}
+			}
+    		if(!separatorReconfigured)
+    		{
+    			if(area1Reconfigured)
+    			{
+    				actualSeparator.setArea1((AreaImpl)leastDistantChild);
+    			}
+    			else
+    			{
+    				actualSeparator.setArea2((AreaImpl)leastDistantChild);
+				}
+    		}
+		}
+    }
+    
+    
+    
+    /**
+     * Finds detected separators adjacent to given node
+     * @param node adjacent node
+     * @return copy of the list of separators, which have the node as area1 or area2
+     */
+    private List<VipsBasedSeparator> getAssociatedSeparators(VipsBasedRunContext context, AreaImpl node)
+    {
+    	return new ArrayList<VipsBasedSeparator>(context.separatorIndex.getSeparators(node));
+    }
+    
+    
+    
+    /**
+     * Adds a separator to detected separators
+     * @param separator detected separator
+     */
+    private void addDetectedSeparator(VipsBasedRunContext context, VipsBasedSeparator separator)
+    {
+    	if(context.separatorOperations != null)
+    	{
+    		//branch context, the separator will be added after the branch is joined
+    		context.separatorOperations.add(new SeparatorOperation(separator, -1));
+    		return;
+    	}
+    	
+    	context.detectedSeparators.add(separator);
+    	context.separatorIndex.add(separator);
+    	separator.setFeatureCache(context.featureCache);
+    }
+    
+    
+    
+    /**
+     * Adds a separator detected in a node of input AreaTree
+     * @param rank preorder rank of the node
+     * @param separator detected separator
+     */
+    private void addNodeSeparator(VipsBasedRunContext context, int rank, VipsBasedSeparator separator)
+    {
+    	List<VipsBasedSeparator> separators = context.nodeSeparators.get(rank);
+    	if(separators == null)
+    	{
+    		separators = new ArrayList<VipsBasedSeparator>();
+    		context.nodeSeparators.put(rank, separators);
+    	}
+    	separators.add(separator);
+    	context.separatorIndex.add(separator);
+    	separator.setFeatureCache(context.featureCache);
+    }
+    
+    
+    
+    /**
+     * Checks validity of the nodes
+     * @param nodes checked nodes
+     * @return validity of every node
+     */
+    private boolean[] getChildrenValidity(VipsBasedRunContext context, List<Area> nodes)
+    {
+    	boolean[] result = new boolean[nodes.size()];
+    	for (int i = 0; i < nodes.size(); i++)
+    		result[i] = isValidNode(context, (AreaImpl)nodes.get(i));
+    	return result;
+    }
+    
+    
+    
+    /**
+     * Check, if current node is a valid node
+     * @param root current node
+     * @result true if current node is a valid node, false otherwise
+     */
+    private boolean isValidNode(VipsBasedRunContext context, AreaImpl root)
+    {
+    	if(isMetVipsRule1(context, root))
+    		return false;
+    	else {
+			return true;
+		}
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * VipsBasedResultCodec.java
+ */
+package org.fit.vips;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Binary format of the result of a segmentation: the output area hierarchy, the visual blocks
+ * and the detected separators. All the records have a fixed size, so a decoded result
+ * reads them directly from the buffer without creating any objects.
+ * <p>
+ * The format starts with a header of the magic number, the format version and the numbers of
+ * the areas, visual blocks and separators, all 32-bit big-endian integers. The header is followed by:
+ * <ul>
+ * <li>areas in the preorder: bounds x1, y1, x2, y2 and the index of the parent area (-1 for the root)</li>
+ * <li>visual blocks: index of the area (-1 if the area isn't in the hierarchy), bounds and the degree of coherence</li>
+ * <li>separators: type, weight, bounds and the indices of the adjacent areas (-1 for no area)</li>
+ * </ul>
+ */
+public class VipsBasedResultCodec
+{
+	/** Magic number of the format, "VIPR" */
+	public static final int magic = 0x56495052;
+
+	/** Actual version of the format */
+	public static final int version = 1;
+
+	static final int headerSize = 20;
+	static final int areaSize = 20;
+	static final int blockSize = 24;
+	static final int separatorSize = 32;
+
+	/**
+	 * Encodes the result of a segmentation
+	 * @param root root of the output area hierarchy
+	 * @param visualBlocks visual blocks of the segmentation
+	 * @param separators detected separators of the segmentation
+	 * @return encoded result, the buffer is ready to be read
+	 */
+	public static ByteBuffer encode(AreaImpl root, List<VipsBasedVisualBlock> visualBlocks, List<VipsBasedSeparator> separators)
+	{
+		List<Area> areas = new ArrayList<Area>();
+		List<Integer> parents = new ArrayList<Integer>();
+		collectAreas(root, -1, areas, parents);
+		Map<Area, Integer> areaIndices = new IdentityHashMap<Area, Integer>();
+		for (int i = 0; i < areas.size(); i++)
+			areaIndices.put(areas.get(i), i);
+
+		ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(areas.size(), visualBlocks.size(), separators.size()));
+		buffer.putInt(magic);
+		buffer.putInt(version);
+		buffer.putInt(areas.size());
+		buffer.putInt(visualBlocks.size());
+		buffer.putInt(separators.size());
+
+		for (int i = 0; i < areas.size(); i++)
+		{
+			Area area = areas.get(i);
+			buffer.putInt(area.getX1()).putInt(area.getY1()).putInt(area.getX2()).putInt(area.getY2());
+			buffer.putInt(parents.get(i));
+		}
+		for (VipsBasedVisualBlock block : visualBlocks)
+		{
+			AreaImpl area = block.getArea();
+			buffer.putInt(getIndex(areaIndices, area));
+			if(area != null)
+				buffer.putInt(area.getX1()).putInt(area.getY1()).putInt(area.getX2()).putInt(area.getY2());
+			else
+				buffer.putInt(0).putInt(0).putInt(0).putInt(0);
+			buffer.putFloat(block.getDoc());
+		}
+		for (VipsBasedSeparator separator : separators)
+		{
+			buffer.putInt(separator.getType());
+			buffer.putInt(separator.getWeight());
+			buffer.putInt(separator.getX1()).putInt(separator.getY1()).putInt(separator.getX2()).putInt(separator.getY2());
+			buffer.putInt(getIndex(areaIndices, separator.getArea1()));
+			buffer.putInt(getIndex(areaIndices, separator.getArea2()));
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Creates a view of an encoded result, the data aren't copied
+	 * @param buffer buffer with the encoded result from its position to its limit
+	 * @return view of the result
+	 * @throws IllegalArgumentException if the buffer doesn't contain a result of a known version
+	 */
+	public static VipsBasedStoredResult decode(ByteBuffer buffer)
+	{
+		ByteBuffer data = buffer.slice();
+		if(data.remaining() < headerSize || data.getInt(0) != magic)
+			throw new IllegalArgumentException("Not an encoded segmentation result");
+		if(data.getInt(4) < 1 || data.getInt(4) > version)
+			throw new IllegalArgumentException("Unsupported version of a segmentation result: " + data.getInt(4));
+
+		int areaCount = data.getInt(8);
+		int blockCount = data.getInt(12);
+		int separatorCount = data.getInt(16);
+		if(areaCount < 0 || blockCount < 0 || separatorCount < 0
+				|| data.remaining() < (long) headerSize + (long) areaCount * areaSize + (long) blockCount * blockSize + (long) separatorCount * separatorSize)
+			throw new IllegalArgumentException("Truncated segmentation result");
+		return new VipsBasedStoredResult(data, areaCount, blockCount, separatorCount);
+	}
+
+	/**
+	 * @return number of bytes of an encoded result
+	 */
+	public static int getEncodedSize(int areaCount, int blockCount, int separatorCount)
+	{
+		return headerSize + areaCount * areaSize + blockCount * blockSize + separatorCount * separatorSize;
+	}
+
+	private static void collectAreas(Area area, int parent, List<Area> areas, List<Integer> parents)
+	{
+		int index = areas.size();
+		areas.add(area);
+		parents.add(parent);
+		for (Area child : area.getChildAreas())
+			collectAreas(child, index, areas, parents);
+	}
+
+	private static int getIndex(Map<Area, Integer> areaIndices, Area area)
+	{
+		Integer index = area != null ? areaIndices.get(area) : null;
+		return index != null ? index : -1;
+	}
+}
@@ -0,0 +1,561 @@
+/**
+ * VipsBasedResultStore.java
+ */
+package org.fit.vips;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Append only store of the encoded results of segmentations identified by the ids of their pages.
+ * The store is a directory with a data file of the encoded results and an index file of the entries
+ * with the id of a page, the offset and the length of its result. The index is loaded into memory,
+ * when the store is opened, the data file is memory mapped in segments and the stored results are read
+ * directly from the mapped file without copying. The mapping of a segment grows geometrically, so the file
+ * may be extended beyond the stored data. The extension is removed when the store is closed or opened.
+ * <p>
+ * The segment size is saved in the headers of the files, a result never crosses the boundary of a segment.
+ * An existing store is always opened with the segment size it was created with.
+ * <p>
+ * A result appended for the id of an already stored page replaces the old one, the space of the old one
+ * isn't reclaimed. The entries of the index, whose results aren't completely written in the data file,
+ * e.g. after a crash, are ignored on the opening. The store is thread safe, the results are read by more threads
+ * at once, an append waits for the running reads.
+ * @see VipsBasedResultCodec
+ */
+public class VipsBasedResultStore implements Closeable
+{
+	/** Magic number of the data file, "VIPS" */
+	public static final int magic = 0x56495053;
+
+	/** Actual version of the store files, the version 1 didn't save the segment size */
+	public static final int version = 2;
+
+	/** Default size of the mapped segments of the data file */
+	public static final int defaultSegmentSize = 1 << 30;
+
+	public static final String dataFileName = "results.dat";
+	public static final String indexFileName = "results.idx";
+
+	/** Header of both the files: magic number, version and segment size */
+	private static final int fileHeaderSize = 12;
+	private static final int indexEntrySize = 20;
+
+	/** Initial size of the mapping of a segment */
+	private static final int minMappingSize = 1 << 20;
+
+	private final File directory;
+	private final int segmentSize;
+	private final RandomAccessFile dataFile;
+	private final RandomAccessFile indexFile;
+	private final FileChannel data;
+	private final FileChannel index;
+
+	/** Shared by the reads, exclusive for the changes of the store */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/** Lock of the mapping of the segments during the reads */
+	private final Object mappingLock = new Object();
+
+	/** Mapped segments of the data file, a segment may be mapped only partly. The array is replaced on a change. */
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	private long dataEnd;
+	private long indexEnd;
+
+	/** Size of the data file including its extension for the mapping, changed by the mapping under the mapping lock */
+	private long dataFileSize;
+
+	/** Open addressing table of the index entries, offset 0 marks an empty slot */
+	private long[] pageIds = new long[16];
+	private long[] offsets = new long[16];
+	private int[] lengths = new int[16];
+	private int size = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Opens a store with its saved segment size, the store is created with the default segment size
+	 * when the directory doesn't contain one
+	 * @param directory directory of the store
+	 * @throws IOException if the store can't be opened
+	 */
+	public VipsBasedResultStore(File directory) throws IOException
+	{
+		this(directory, defaultSegmentSize, false);
+	}
+
+	/**
+	 * Opens a store, the store is created when the directory doesn't contain one
+	 * @param directory directory of the store
+	 * @param segmentSize size of the mapped segments of the data file, the maximal length of a stored result
+	 * @throws IOException if the store can't be opened or if it was created with another segment size
+	 */
+	public VipsBasedResultStore(File directory, int segmentSize) throws IOException
+	{
+		this(directory, segmentSize, true);
+	}
+
+	private VipsBasedResultStore(File directory, int segmentSize, boolean requiredSegmentSize) throws IOException
+	{
+		if(segmentSize <= fileHeaderSize)
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Can't create the directory " + directory);
+
+		this.directory = directory;
+		dataFile = new RandomAccessFile(new File(directory, dataFileName), "rw");
+		indexFile = new RandomAccessFile(new File(directory, indexFileName), "rw");
+		data = dataFile.getChannel();
+		index = indexFile.getChannel();
+		try
+		{
+			int savedSegmentSize = readSegmentSize(data);
+			if(savedSegmentSize != 0 && savedSegmentSize != segmentSize && requiredSegmentSize)
+				throw new IOException("The result store has the segment size " + savedSegmentSize + ": " + directory);
+			this.segmentSize = (savedSegmentSize != 0) ? savedSegmentSize : segmentSize;
+			dataEnd = openFile(data);
+			indexEnd = openFile(index);
+			loadIndex();
+			dataFileSize = dataEnd;
+		}
+		catch (IOException e)
+		{
+			closeFiles();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			closeFiles();
+			throw e;
+		}
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	public int getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	/**
+	 * @return number of the stored pages
+	 */
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return size;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of bytes of the data file without its extension for the mapping
+	 */
+	public long getDataSize()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return dataEnd;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Encodes and stores the result of a segmentation of a page
+	 * @param pageId id of the page
+	 * @param root root of the output area hierarchy
+	 * @param visualBlocks visual blocks of the segmentation
+	 * @param separators detected separators of the segmentation
+	 * @throws IOException if the result can't be written
+	 */
+	public void append(long pageId, AreaImpl root, List<VipsBasedVisualBlock> visualBlocks, List<VipsBasedSeparator> separators) throws IOException
+	{
+		append(pageId, VipsBasedResultCodec.encode(root, visualBlocks, separators));
+	}
+
+	/**
+	 * Encodes and stores the result of a segmentation of a page of a batch
+	 * @param pageId id of the page
+	 * @param result successful result of the segmentation
+	 * @throws IOException if the result can't be written
+	 */
+	public void append(long pageId, VipsBasedBatchResult result) throws IOException
+	{
+		if(!result.isSuccessful())
+			throw new IllegalArgumentException("Failed segmentation of the page " + pageId);
+		append(pageId, (AreaImpl) result.getAreaTree().getRoot(), result.getVisualBlocks(), result.getDetectedSeparators());
+	}
+
+	/**
+	 * Stores an encoded result of a segmentation of a page
+	 * @param pageId id of the page
+	 * @param encoded encoded result from its position to its limit, the position isn't changed
+	 * @throws IOException if the result can't be written
+	 */
+	public void append(long pageId, ByteBuffer encoded) throws IOException
+	{
+		ByteBuffer record = encoded.duplicate();
+		int length = record.remaining();
+		VipsBasedResultCodec.decode(record);
+		if(length > segmentSize)
+			throw new IllegalArgumentException("Too long result of the page " + pageId + ": " + length);
+
+		lock.writeLock().lock();
+		try
+		{
+			checkOpen();
+			append(pageId, record, length);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void append(long pageId, ByteBuffer record, int length) throws IOException
+	{
+		//a result never crosses the boundary of a segment to be mapped as a whole
+		long offset = dataEnd;
+		if(offset / segmentSize != (offset + length - 1) / segmentSize)
+			offset = (offset / segmentSize + 1) * segmentSize;
+		writeFully(data, record, offset);
+
+		ByteBuffer entry = ByteBuffer.allocate(indexEntrySize);
+		entry.putLong(pageId).putLong(offset).putInt(length);
+		entry.flip();
+		writeFully(index, entry, indexEnd);
+
+		dataEnd = offset + length;
+		dataFileSize = Math.max(dataFileSize, dataEnd);
+		indexEnd += indexEntrySize;
+		put(pageId, offset, length);
+	}
+
+	/**
+	 * @return true if the store contains a result of the page
+	 */
+	public boolean contains(long pageId)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return offsets[find(pageId)] != 0;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the result of a page, the result is read from the mapped data file without copying
+	 * @param pageId id of the page
+	 * @return result of the page or null if the store doesn't contain it
+	 * @throws IOException if the data file can't be mapped
+	 */
+	public VipsBasedStoredResult get(long pageId) throws IOException
+	{
+		long offset;
+		int length;
+		ByteBuffer segment;
+		lock.readLock().lock();
+		try
+		{
+			checkOpen();
+			int slot = find(pageId);
+			offset = offsets[slot];
+			length = lengths[slot];
+			if(offset == 0)
+				return null;
+			segment = getSegment(offset, length).duplicate();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+
+		int position = (int) (offset % segmentSize);
+		segment.position(position);
+		segment.limit(position + length);
+		return VipsBasedResultCodec.decode(segment);
+	}
+
+	/**
+	 * Forces the appended results to the storage device
+	 * @throws IOException if the files can't be written
+	 */
+	public void flush() throws IOException
+	{
+		lock.readLock().lock();
+		try
+		{
+			checkOpen();
+			data.force(false);
+			index.force(false);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes the store, the results read from the store mustn't be used after it
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		lock.writeLock().lock();
+		try
+		{
+			if(closed)
+				return;
+			closed = true;
+			segments = new MappedByteBuffer[0];
+			try
+			{
+				if(dataFileSize != dataEnd)
+					data.truncate(dataEnd);
+			}
+			catch (IOException e)
+			{
+				//some systems don't truncate mapped files, the extension is removed on the next opening
+			}
+			closeFiles();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return segment size saved in the header of the file, 0 for an empty file
+	 */
+	private int readSegmentSize(FileChannel channel) throws IOException
+	{
+		if(channel.size() == 0)
+			return 0;
+		ByteBuffer header = readHeader(channel);
+		if(header.getInt(8) <= fileHeaderSize)
+			throw new IOException("Invalid segment size of a result store: " + header.getInt(8));
+		return header.getInt(8);
+	}
+
+	private long openFile(FileChannel channel) throws IOException
+	{
+		if(channel.size() == 0)
+		{
+			ByteBuffer header = ByteBuffer.allocate(fileHeaderSize);
+			header.putInt(magic).putInt(version).putInt(segmentSize);
+			header.flip();
+			writeFully(channel, header, 0);
+			return fileHeaderSize;
+		}
+
+		ByteBuffer header = readHeader(channel);
+		if(header.getInt(8) != segmentSize)
+			throw new IOException("Inconsistent segment sizes of the files of a result store: " + directory);
+		return channel.size();
+	}
+
+	private ByteBuffer readHeader(FileChannel channel) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(fileHeaderSize);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0);
+		if(header.position() < 8 || header.getInt(0) != magic)
+			throw new IOException("Not a result store: " + directory);
+		if(header.getInt(4) != version)
+			throw new IOException("Unsupported version of a result store: " + header.getInt(4));
+		if(header.hasRemaining())
+			throw new IOException("Not a result store: " + directory);
+		return header;
+	}
+
+	private void loadIndex() throws IOException
+	{
+		long entries = (indexEnd - fileHeaderSize) / indexEntrySize;
+		ByteBuffer buffer = ByteBuffer.allocate(indexEntrySize * 4096);
+		long position = fileHeaderSize;
+		long validEnd = fileHeaderSize;
+		long validDataEnd = fileHeaderSize;
+		for (long i = 0; i < entries; )
+		{
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), (entries - i) * indexEntrySize));
+			while (buffer.hasRemaining() && index.read(buffer, position + buffer.position()) >= 0);
+			buffer.flip();
+			position += buffer.limit();
+			while (buffer.remaining() >= indexEntrySize)
+			{
+				long pageId = buffer.getLong();
+				long offset = buffer.getLong();
+				int length = buffer.getInt();
+				i++;
+				if(offset < fileHeaderSize || length < VipsBasedResultCodec.headerSize || offset + length > dataEnd)
+					break;
+				put(pageId, offset, length);
+				validEnd = fileHeaderSize + i * indexEntrySize;
+				validDataEnd = Math.max(validDataEnd, offset + length);
+			}
+			if(validEnd != fileHeaderSize + i * indexEntrySize)
+				break;
+		}
+
+		//the entries after the first invalid one weren't completely written
+		if(validEnd != indexEnd)
+		{
+			index.truncate(validEnd);
+			indexEnd = validEnd;
+		}
+		//the data after the last valid result are an extension for the mapping or an unfinished result
+		if(validDataEnd != dataEnd)
+		{
+			data.truncate(validDataEnd);
+			dataEnd = validDataEnd;
+		}
+	}
+
+	private void put(long pageId, long offset, int length)
+	{
+		int slot = find(pageId);
+		if(offsets[slot] == 0)
+		{
+			if(2 * (size + 1) > offsets.length)
+			{
+				grow();
+				slot = find(pageId);
+			}
+			size++;
+		}
+		pageIds[slot] = pageId;
+		offsets[slot] = offset;
+		lengths[slot] = length;
+	}
+
+	private int find(long pageId)
+	{
+		int mask = offsets.length - 1;
+		long hash = pageId * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (offsets[slot] != 0 && pageIds[slot] != pageId)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow()
+	{
+		long[] oldPageIds = pageIds;
+		long[] oldOffsets = offsets;
+		int[] oldLengths = lengths;
+		pageIds = new long[oldOffsets.length * 2];
+		offsets = new long[oldOffsets.length * 2];
+		lengths = new int[oldOffsets.length * 2];
+		for (int i = 0; i < oldOffsets.length; i++)
+		{
+			if(oldOffsets[i] != 0)
+			{
+				int slot = find(oldPageIds[i]);
+				pageIds[slot] = oldPageIds[i];
+				offsets[slot] = oldOffsets[i];
+				lengths[slot] = oldLengths[i];
+			}
+		}
+	}
+
+	/**
+	 * Finds the mapped segment of the data file, which contains the whole record. The segment is mapped
+	 * when it isn't mapped yet or when its mapping doesn't contain the record. The read lock must be held.
+	 * @return mapped segment
+	 */
+	private MappedByteBuffer getSegment(long offset, int length) throws IOException
+	{
+		int number = (int) (offset / segmentSize);
+		long start = (long) number * segmentSize;
+		MappedByteBuffer segment = getMappedSegment(number, offset + length - start);
+		if(segment != null)
+			return segment;
+
+		synchronized (mappingLock)
+		{
+			//the segment may be mapped by another read meanwhile
+			MappedByteBuffer oldSegment = (number < segments.length) ? segments[number] : null;
+			if(oldSegment != null && oldSegment.capacity() >= offset + length - start)
+				return oldSegment;
+
+			//the mapping covers all the data of the segment and at least doubles,
+			//the results appended later into the mapped part of the file are read without mapping it again
+			long size = Math.max(dataEnd - start, oldSegment == null ? minMappingSize : 2L * oldSegment.capacity());
+			size = Math.min(size, segmentSize);
+			if(dataFileSize < start + size)
+			{
+				dataFile.setLength(start + size);
+				dataFileSize = start + size;
+			}
+			segment = data.map(FileChannel.MapMode.READ_ONLY, start, size);
+
+			MappedByteBuffer[] newSegments = Arrays.copyOf(segments, Math.max(segments.length, number + 1));
+			newSegments[number] = segment;
+			segments = newSegments;
+			return segment;
+		}
+	}
+
+	/**
+	 * @return mapped segment, if it contains given number of bytes, null otherwise
+	 */
+	private MappedByteBuffer getMappedSegment(int number, long size)
+	{
+		MappedByteBuffer[] mappedSegments = segments;
+		if(number < mappedSegments.length && mappedSegments[number] != null && mappedSegments[number].capacity() >= size)
+			return mappedSegments[number];
+		return null;
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	private void checkOpen() throws IOException
+	{
+		if(closed)
+			throw new IOException("The result store is closed: " + directory);
+	}
+
+	private void closeFiles() throws IOException
+	{
+		try
+		{
+			dataFile.close();
+		}
+		finally
+		{
+			indexFile.close();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/**
+ * VipsBasedRunContext.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * State of one run of the VIPS based algorithm. Every run of the operator has its own context,
+ * so a single operator instance can segment more pages at once in different threads.
+ * A context itself must be used by one thread only.
+ * <p>
+ * Subtrees divided in parallel get branch contexts created by {@link #fork(AreaImpl)}. A branch collects
+ * its own visual blocks and it only records the operations with separators, which are replayed
+ * in the sequential order after the branches are joined.
+ */
+class VipsBasedRunContext
+{
+	/** Page root used for the relative size of the nodes */
+	final AreaImpl pageRoot;
+
+	/** Predefined degree of coherence value of the run */
+	final float pdocValue;
+
+	/** Page threshold value of the run */
+	final int pageThreshold;
+
+	/** Pool for the parallel division of subtrees, null for the sequential division */
+	final ForkJoinPool forkJoinPool;
+
+	/** Minimal number of areas in a subtree divided in parallel */
+	final int forkSubtreeSize;
+
+	/** Cache of the divisions of subtrees shared with other runs, null if the divisions aren't cached */
+	final VipsBasedSubtreeCache subtreeCache;
+	/** Fingerprints of the subtrees of the input tree, computed only for a run with a subtree cache */
+	final Map<AreaImpl, Long> fingerprints;
+	/** Learned template of the site of the page, null if the divisions of all the subtrees are cached */
+	final VipsBasedTemplateProfile templateProfile;
+	/** Paths of the subtrees of the input tree with a fingerprint, computed only for a run with a template profile */
+	final Map<AreaImpl, Long> subtreePaths;
+
+	final VipsBasedVisualBlockPool visualBlocksPool = new VipsBasedVisualBlockPool();
+	final List<VipsBasedSeparator> detectedSeparators = new ArrayList<VipsBasedSeparator>();
+	final VipsBasedSeparatorIndex separatorIndex = new VipsBasedSeparatorIndex();
+	final Set<AreaImpl> nonDividableNodes = Collections.newSetFromMap(new IdentityHashMap<AreaImpl, Boolean>());
+	final VipsBasedDocEvaluator docEvaluator = new VipsBasedDocEvaluator();
+	final VipsBasedTagClassifier tagClassifier = new VipsBasedTagClassifier();
+	final VipsBasedAreaFeatureCache featureCache;
+
+	/** Preorder ranks of the nodes of the input tree, their separators are detected when the division reaches them */
+	final Map<AreaImpl, Integer> nodeRanks;
+	/** Nodes, whose separators were already detected */
+	final Set<AreaImpl> detectedNodes = Collections.newSetFromMap(new IdentityHashMap<AreaImpl, Boolean>());
+	/** Separators detected in the nodes of the input tree by the rank of the node */
+	final TreeMap<Integer, List<VipsBasedSeparator>> nodeSeparators = new TreeMap<Integer, List<VipsBasedSeparator>>();
+
+	/** Detected separators sorted by weight for their filtering, null outside of these phases */
+	VipsBasedSeparatorStore separatorStore = null;
+
+	/** Metrics of the run, null if they aren't collected */
+	final VipsBasedMetrics metrics;
+
+	/** Recorded operations with separators of a branch, null if the operations are performed immediately */
+	final List<SeparatorOperation> separatorOperations;
+
+	/** Recorded divisions of the subtrees of a repeatedly segmented page, null if the divisions aren't recorded */
+	VipsBasedDivisionRecords divisionRecords = null;
+	/** Divisions of subtrees recorded, cached or replayed in a branch, null if the divisions aren't recorded */
+	List<NestedDivision> nestedDivisions = null;
+
+	/** Consumer of the extracted visual blocks, null if the blocks aren't streamed */
+	VipsBasedBlockConsumer blockConsumer = null;
+	/** Depth of the repeated division of a leaf node, 0 for the run of a page */
+	int nestingDepth = 0;
+
+	/** Actual degree of coherence value */
+	float docValue = 0;
+	boolean docValueIsKnown = false;
+	boolean isNotValidNode = false;
+
+	VipsBasedRunContext(AreaImpl pageRoot, float pdocValue, int pageThreshold, ForkJoinPool forkJoinPool, int forkSubtreeSize,
+			VipsBasedSubtreeCache subtreeCache, VipsBasedTemplateProfile templateProfile, VipsBasedMetrics metrics)
+	{
+		this.pageRoot = pageRoot;
+		this.pdocValue = pdocValue;
+		this.pageThreshold = pageThreshold;
+		this.forkJoinPool = forkJoinPool;
+		this.forkSubtreeSize = forkSubtreeSize;
+		this.subtreeCache = subtreeCache;
+		if(subtreeCache != null)
+			this.fingerprints = new IdentityHashMap<AreaImpl, Long>();
+		else
+			this.fingerprints = null;
+		this.templateProfile = templateProfile;
+		if(templateProfile != null)
+			this.subtreePaths = new IdentityHashMap<AreaImpl, Long>();
+		else
+			this.subtreePaths = null;
+		this.featureCache = new VipsBasedAreaFeatureCache(tagClassifier);
+		this.nodeRanks = new IdentityHashMap<AreaImpl, Integer>();
+		this.metrics = metrics;
+		this.separatorOperations = null;
+	}
+
+	private VipsBasedRunContext(VipsBasedRunContext parent, boolean sameThread)
+	{
+		this.pageRoot = parent.pageRoot;
+		this.pdocValue = parent.pdocValue;
+		this.pageThreshold = parent.pageThreshold;
+		this.forkJoinPool = parent.forkJoinPool;
+		this.forkSubtreeSize = parent.forkSubtreeSize;
+		this.subtreeCache = parent.subtreeCache;
+		this.fingerprints = parent.fingerprints;
+		this.templateProfile = parent.templateProfile;
+		this.subtreePaths = parent.subtreePaths;
+		if(sameThread)
+			this.featureCache = parent.featureCache;
+		else
+			this.featureCache = new VipsBasedAreaFeatureCache(tagClassifier, parent.featureCache);
+		this.nodeRanks = parent.nodeRanks;
+		if(parent.metrics != null)
+			this.metrics = new VipsBasedMetrics();
+		else
+			this.metrics = null;
+		this.separatorOperations = new ArrayList<SeparatorOperation>();
+		this.divisionRecords = parent.divisionRecords;
+		this.blockConsumer = parent.blockConsumer;
+		this.nestingDepth = parent.nestingDepth;
+		if(divisionRecords != null || subtreeCache != null)
+			this.nestedDivisions = new ArrayList<NestedDivision>();
+	}
+
+	/**
+	 * Creates a context for the division of a subtree in another thread.
+	 * This context must not be changed until the branch is joined.
+	 * @param subtreeRoot root of the divided subtree
+	 * @return branch context
+	 */
+	VipsBasedRunContext fork(AreaImpl subtreeRoot)
+	{
+		return createBranch(subtreeRoot, false);
+	}
+
+	/**
+	 * Creates a context for the division of a subtree in the same thread, which records the division.
+	 * The branch shares the features of the areas with this context.
+	 * @param subtreeRoot root of the divided subtree
+	 * @return branch context
+	 */
+	VipsBasedRunContext branch(AreaImpl subtreeRoot)
+	{
+		return createBranch(subtreeRoot, true);
+	}
+
+	private VipsBasedRunContext createBranch(AreaImpl subtreeRoot, boolean sameThread)
+	{
+		VipsBasedRunContext branch = new VipsBasedRunContext(this, sameThread);
+		//rule 7 marks children of the divided node, the rest of the subtree is marked in the branch
+		if(nonDividableNodes.contains(subtreeRoot))
+			branch.nonDividableNodes.add(subtreeRoot);
+		return branch;
+	}
+
+	/**
+	 * Takes the results of a joined branch, the branches have to be joined in the order of their subtrees
+	 * @param branch joined branch context
+	 */
+	void join(VipsBasedRunContext branch)
+	{
+		visualBlocksPool.addAll(branch.visualBlocksPool);
+		nonDividableNodes.addAll(branch.nonDividableNodes);
+		detectedNodes.addAll(branch.detectedNodes);
+		if(metrics != null)
+			metrics.addCounts(branch.metrics);
+		if(branch.featureCache != featureCache)
+			branch.featureCache.mergeInvalidations();
+	}
+
+	/**
+	 * Records a division of a subtree, which was recorded, cached or replayed in this branch
+	 * @param root root of the subtree
+	 * @param division recorded division of the subtree, null if it isn't recorded
+	 * @param cachedDivision cached division of the subtree, null if it isn't cached
+	 * @param firstBlock index of the first visual block of the subtree in the pool of this branch
+	 * @param firstOperation index of the first operation with separators of the subtree in this branch
+	 */
+	void addNestedDivision(AreaImpl root, VipsBasedDivisionRecords.SubtreeDivision division, VipsBasedSubtreeCache.CachedDivision cachedDivision,
+			int firstBlock, int firstOperation)
+	{
+		if(nestedDivisions != null)
+			nestedDivisions.add(new NestedDivision(root, division, cachedDivision, firstBlock, visualBlocksPool.size(),
+					firstOperation, separatorOperations.size()));
+	}
+
+	/**
+	 * Separators detected in the nodes of the input tree in the preorder of the nodes
+	 * @return list of the separators
+	 */
+	List<VipsBasedSeparator> getNodeSeparators()
+	{
+		List<VipsBasedSeparator> result = new ArrayList<VipsBasedSeparator>();
+		for (List<VipsBasedSeparator> separators : nodeSeparators.values())
+			result.addAll(separators);
+		return result;
+	}
+
+	/**
+	 * Recorded or cached division of a subtree with its visual blocks and operations with separators in a branch
+	 */
+	static class NestedDivision
+	{
+		final AreaImpl root;
+		/** Recorded and cached division, either of them may be null */
+		final VipsBasedDivisionRecords.SubtreeDivision division;
+		final VipsBasedSubtreeCache.CachedDivision cachedDivision;
+		final int firstBlock;
+		final int endBlock;
+		final int firstOperation;
+		final int endOperation;
+
+		NestedDivision(AreaImpl root, VipsBasedDivisionRecords.SubtreeDivision division, VipsBasedSubtreeCache.CachedDivision cachedDivision,
+				int firstBlock, int endBlock, int firstOperation, int endOperation)
+		{
+			this.root = root;
+			this.division = division;
+			this.cachedDivision = cachedDivision;
+			this.firstBlock = firstBlock;
+			this.endBlock = endBlock;
+			this.firstOperation = firstOperation;
+			this.endOperation = endOperation;
+		}
+	}
+
+	/**
+	 * Operation with separators recorded in a branch, either an addition of a detected separator
+	 * or a reconfiguration of separators adjacent to a divided node
+	 */
+	static class SeparatorOperation
+	{
+		/** Added separator, null for a reconfiguration */
+		final VipsBasedSeparator separator;
+		/** Rank of the input tree node, whose separator is added, -1 for a separator found by the rules */
+		final int nodeRank;
+		/** Reconfigured node */
+		final AreaImpl root;
+		/** Children of the node and their validity at the time of the reconfiguration */
+		final List<Area> children;
+		final boolean[] validChildren;
+
+		SeparatorOperation(VipsBasedSeparator separator, int nodeRank)
+		{
+			this.separator = separator;
+			this.nodeRank = nodeRank;
+			this.root = null;
+			this.children = null;
+			this.validChildren = null;
+		}
+
+		SeparatorOperation(AreaImpl root, List<Area> children, boolean[] validChildren)
+		{
+			this.separator = null;
+			this.nodeRank = -1;
+			this.root = root;
+			this.children = children;
+			this.validChildren = validChildren;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * VipsBasedSeparator.java
+ */
+package org.fit.vips;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fit.layout.model.Box;
+import org.fit.layout.model.Rectangular;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.segm.grouping.op.Separator;
+
+/**
+ * Visual separator from VIPS perspective
+ * @author Michal Malanik
+ */
+public class VipsBasedSeparator extends Separator {
+	
+	/** Number of weight computations performed by all separators */
+	private static final AtomicLong weightComputations = new AtomicLong();
+	
+	/** Cached weight, valid only if weightIsKnown is set */
+	private int weight;
+	private boolean weightIsKnown = false;
+	
+	/** Index of adjacent separators this separator belongs to */
+	private VipsBasedSeparatorIndex index = null;
+	
+	/** Features of the adjacent areas, null if they are read from the areas directly */
+	private VipsBasedAreaFeatureCache featureCache = null;
+	
+	public VipsBasedSeparator(short type, int x1, int y1, int x2, int y2)
+	{
+        super(type, x1, y1, x2, y2);
+	}
+
+	public VipsBasedSeparator(Separator orig)
+	{
+        super(orig);
+	}
+	
+    public VipsBasedSeparator(short type, Rectangular rect)
+    {
+        super(type, rect);
+    }
+    
+    @Override
+    public void setArea1(AreaImpl area1)
+    {
+    	AreaImpl oldArea = getArea1();
+    	super.setArea1(area1);
+    	invalidateWeight();
+    	if(index != null)
+    		index.areaChanged(this, oldArea, area1, getArea2());
+    }
+    
+    @Override
+    public void setArea2(AreaImpl area2)
+    {
+    	AreaImpl oldArea = getArea2();
+    	super.setArea2(area2);
+    	invalidateWeight();
+    	if(index != null)
+    		index.areaChanged(this, oldArea, area2, getArea1());
+    }
+    
+    VipsBasedSeparatorIndex getIndex()
+    {
+    	return index;
+    }
+    
+    void setIndex(VipsBasedSeparatorIndex index)
+    {
+    	this.index = index;
+    }
+    
+    void setFeatureCache(VipsBasedAreaFeatureCache featureCache)
+    {
+    	this.featureCache = featureCache;
+    	invalidateWeight();
+    }
+    
+    /**
+     * Forces the weight to be computed again on the next {@link #getWeight()} call.
+     * Needed when the adjacent areas are modified without rebinding the separator.
+     */
+    public void invalidateWeight()
+    {
+    	weightIsKnown = false;
+    }
+    
+    /**
+     * Returns the number of weight computations performed by all separators since
+     * the last reset. Compared with the number of getWeight() calls, it gives the cache hit rate.
+     */
+    public static long getWeightComputationCount()
+    {
+    	return weightComputations.get();
+    }
+    
+    public static void resetWeightComputationCount()
+    {
+    	weightComputations.set(0);
+    }
+    
+    @Override
+    public int getWeight()
+	{
+    	if(!weightIsKnown)
+    	{
+    		weight = computeWeight();
+    		weightIsKnown = true;
+    		weightComputations.incrementAndGet();
+    	}
+    	return weight;
+	}
+    
+    private int computeWeight()
+	{
+	    int result = 0;
+	    
+	    if(getArea1() == null || getArea2() == null)
+	    	return 0;
+    	
+    	//line joining separators
+    	if(getType() == Separator.VERTICAL && getWidth() < 15) 
+    		return 0;
+    	
+    	VipsBasedAreaFeatures area1 = getFeatures(getArea1());
+    	VipsBasedAreaFeatures area2 = getFeatures(getArea2());
+    	
+    	//If the differences of font properties such as font size and font weight are bigger on two sides of the separator, the weight will be increased
+		result += Math.abs(area1.getFontSize() - area2.getFontSize()); 
+		result += Math.abs(area1.getFontWeight() - area2.getFontWeight()); 
+		result += Math.abs(area1.getFontStyle() - area2.getFontStyle()); 
+		result += Math.abs(area1.getUnderline() - area2.getUnderline()); 
+		result += Math.abs(area1.getLineThrough() - area2.getLineThrough());
+		
+		//The weight will be increased if the font size of the block above the separator is smaller than the font size of the block below the separator.
+		if(getType() == Separator.HORIZONTAL && (area1.getFontSize() < area2.getFontSize()))
+			result += area2.getFontSize()-area1.getFontSize();
+		
+		//If background colors of the blocks on two sides of the separator are different, the weight will be increased.
+		if(area1.getBackgroundColor() != null && area2.getBackgroundColor() != null)
+		{
+			if(!area1.getBackgroundColor().equals(area2.getBackgroundColor()))
+				result *= 2;
+		}
+		else if((area1.getBackgroundColor() == null && area2.getBackgroundColor() != null) || (area1.getBackgroundColor() != null && area2.getBackgroundColor() == null))
+			result *= 2;
+		
+		//If the structures of the blocks on the two sides of the separator are very similar (e.g. both are text), the weight of the separator will be decreased.
+		if(area1.getFirstBoxType() != null && area2.getFirstBoxType() != null)
+			if(	(area1.getFirstBoxType() == Box.Type.TEXT_CONTENT && area2.getFirstBoxType() == Box.Type.TEXT_CONTENT) ||
+				(area1.getFirstBoxType() == Box.Type.REPLACED_CONTENT && area2.getFirstBoxType() == Box.Type.REPLACED_CONTENT))
+					result /= 2;
+		else if(area1.getFontSize() == area2.getFontSize() || area1.getFontStyle() == area2.getFontStyle())
+			result /= 2;
+		
+		//The greater the distance between blocks on different side of the separator, the higher the weight.
+    	if(getType() == Separator.HORIZONTAL)
+    		result += getHeight()/2;
+    	else if(getType() == Separator.VERTICAL)
+    	{
+    		result += getWidth();
+    		result *= 2;
+    	}
+		
+    	
+    	return result;
+	}
+    
+    private VipsBasedAreaFeatures getFeatures(AreaImpl area)
+    {
+    	if(featureCache != null)
+    		return featureCache.get(area);
+    	else
+    		return new VipsBasedAreaFeatures(area, null);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * VipsBasedSeparatorIndex.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Index of separators adjacent to an area. Indexed separators report every change
+ * of their adjacent areas, so the index is always up to date.
+ */
+public class VipsBasedSeparatorIndex
+{
+	private final Map<AreaImpl, List<VipsBasedSeparator>> adjacentSeparators = new IdentityHashMap<AreaImpl, List<VipsBasedSeparator>>();
+	private int size = 0;
+
+	/**
+	 * Adds separator to the index
+	 * @param separator indexed separator
+	 */
+	public void add(VipsBasedSeparator separator)
+	{
+		if(separator.getIndex() == this)
+			return;
+		if(separator.getIndex() != null)
+			separator.getIndex().remove(separator);
+
+		separator.setIndex(this);
+		addAdjacent(separator.getArea1(), separator);
+		if(separator.getArea2() != separator.getArea1())
+			addAdjacent(separator.getArea2(), separator);
+		size++;
+	}
+
+	/**
+	 * Removes separator from the index
+	 * @param separator removed separator
+	 * @return true if the separator was indexed, false otherwise
+	 */
+	public boolean remove(VipsBasedSeparator separator)
+	{
+		if(separator.getIndex() != this)
+			return false;
+
+		removeAdjacent(separator.getArea1(), separator);
+		if(separator.getArea2() != separator.getArea1())
+			removeAdjacent(separator.getArea2(), separator);
+		separator.setIndex(null);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Returns separators adjacent to given area
+	 * @param area adjacent area
+	 * @return unmodifiable list of separators, which have the area as area1 or area2
+	 */
+	public List<VipsBasedSeparator> getSeparators(AreaImpl area)
+	{
+		List<VipsBasedSeparator> separators = adjacentSeparators.get(area);
+		if(separators == null)
+			return Collections.emptyList();
+		else
+			return Collections.unmodifiableList(separators);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		for (List<VipsBasedSeparator> separators : adjacentSeparators.values())
+		{
+			for (VipsBasedSeparator separator : separators)
+				separator.setIndex(null);
+		}
+		adjacentSeparators.clear();
+		size = 0;
+	}
+
+	/**
+	 * Updates the index after one of the separator's adjacent areas was changed
+	 * @param separator changed separator
+	 * @param oldArea previous adjacent area
+	 * @param newArea new adjacent area
+	 * @param otherArea the adjacent area on the other side of the separator
+	 */
+	void areaChanged(VipsBasedSeparator separator, AreaImpl oldArea, AreaImpl newArea, AreaImpl otherArea)
+	{
+		if(oldArea == newArea)
+			return;
+
+		if(oldArea != otherArea)
+			removeAdjacent(oldArea, separator);
+		if(newArea != otherArea)
+			addAdjacent(newArea, separator);
+	}
+
+	private void addAdjacent(AreaImpl area, VipsBasedSeparator separator)
+	{
+		if(area == null)
+			return;
+
+		List<VipsBasedSeparator> separators = adjacentSeparators.get(area);
+		if(separators == null)
+		{
+			separators = new ArrayList<VipsBasedSeparator>(2);
+			adjacentSeparators.put(area, separators);
+		}
+		separators.add(separator);
+	}
+
+	private void removeAdjacent(AreaImpl area, VipsBasedSeparator separator)
+	{
+		if(area == null)
+			return;
+
+		List<VipsBasedSeparator> separators = adjacentSeparators.get(area);
+		if(separators == null)
+			return;
+
+		for (int i = 0; i < separators.size(); i++)
+		{
+			if(separators.get(i) == separator)
+			{
+				separators.remove(i);
+				break;
+			}
+		}
+		if(separators.isEmpty())
+			adjacentSeparators.remove(area);
+	}
+}
@@ -0,0 +1,228 @@
+/**
+ * VipsBasedSeparatorQueue.java
+ */
+package org.fit.vips;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Queue of separators ordered ascending by weight, used in the phase of content structure construction.
+ * Separators with the same weight are kept in buckets in the order they were queued (as a stable sort would do),
+ * the buckets are ordered by a heap. Every queued separator has a handle, so it can be removed in constant time.
+ * The order is given by the weights at the time the separators are queued.
+ */
+public class VipsBasedSeparatorQueue implements Iterable<VipsBasedSeparator>
+{
+	/** Handles of the queued separators */
+	private final Map<VipsBasedSeparator, Entry> handles = new IdentityHashMap<VipsBasedSeparator, Entry>();
+
+	/** First and last queued separator */
+	private Entry first = null;
+	private Entry last = null;
+
+	/**
+	 * Creates a queue of given separators
+	 * @param separators separators to be queued
+	 */
+	public VipsBasedSeparatorQueue(Collection<VipsBasedSeparator> separators)
+	{
+		Map<Integer, Bucket> buckets = new HashMap<Integer, Bucket>();
+
+		for (VipsBasedSeparator separator : separators)
+		{
+			if(handles.containsKey(separator))
+				continue;
+
+			int weight = separator.getWeight();
+			Bucket bucket = buckets.get(weight);
+			if(bucket == null)
+			{
+				bucket = new Bucket(weight);
+				buckets.put(weight, bucket);
+			}
+
+			Entry entry = new Entry(separator);
+			bucket.append(entry);
+			handles.put(separator, entry);
+		}
+
+		//link the buckets ascending by weight
+		PriorityQueue<Bucket> heap = new PriorityQueue<Bucket>(Math.max(1, buckets.size()));
+		heap.addAll(buckets.values());
+		while (!heap.isEmpty())
+		{
+			Bucket bucket = heap.poll();
+			if(last == null)
+				first = bucket.first;
+			else
+			{
+				last.next = bucket.first;
+				bucket.first.previous = last;
+			}
+			last = bucket.last;
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return first == null;
+	}
+
+	public int size()
+	{
+		return handles.size();
+	}
+
+	public boolean contains(VipsBasedSeparator separator)
+	{
+		return handles.containsKey(separator);
+	}
+
+	/**
+	 * Returns the separator with the lowest weight without removing it
+	 * @return first separator or null if the queue is empty
+	 */
+	public VipsBasedSeparator peek()
+	{
+		if(first == null)
+			return null;
+		else
+			return first.separator;
+	}
+
+	/**
+	 * Removes the separator with the lowest weight
+	 * @return removed separator or null if the queue is empty
+	 */
+	public VipsBasedSeparator poll()
+	{
+		if(first == null)
+			return null;
+
+		VipsBasedSeparator result = first.separator;
+		unlink(first);
+		return result;
+	}
+
+	/**
+	 * Removes given separator from the queue
+	 * @param separator separator to be removed
+	 * @return true if the separator was queued, false otherwise
+	 */
+	public boolean remove(VipsBasedSeparator separator)
+	{
+		Entry entry = handles.get(separator);
+		if(entry == null)
+			return false;
+
+		unlink(entry);
+		return true;
+	}
+
+	/**
+	 * Iterates over queued separators ascending by weight,
+	 * the iterator supports removal of the actual separator
+	 */
+	@Override
+	public Iterator<VipsBasedSeparator> iterator()
+	{
+		return new Iterator<VipsBasedSeparator>() {
+			private Entry next = first;
+			private Entry actual = null;
+
+			@Override
+			public boolean hasNext()
+			{
+				return next != null;
+			}
+
+			@Override
+			public VipsBasedSeparator next()
+			{
+				if(next == null)
+					throw new NoSuchElementException();
+				actual = next;
+				next = next.next;
+				return actual.separator;
+			}
+
+			@Override
+			public void remove()
+			{
+				if(actual == null || handles.get(actual.separator) != actual)
+					throw new IllegalStateException();
+				unlink(actual);
+				actual = null;
+			}
+		};
+	}
+
+	private void unlink(Entry entry)
+	{
+		if(entry.previous == null)
+			first = entry.next;
+		else
+			entry.previous.next = entry.next;
+
+		if(entry.next == null)
+			last = entry.previous;
+		else
+			entry.next.previous = entry.previous;
+
+		handles.remove(entry.separator);
+	}
+
+	/**
+	 * Queued separator
+	 */
+	private static class Entry
+	{
+		final VipsBasedSeparator separator;
+		Entry previous = null;
+		Entry next = null;
+
+		Entry(VipsBasedSeparator separator)
+		{
+			this.separator = separator;
+		}
+	}
+
+	/**
+	 * Separators with the same weight in the order they were queued
+	 */
+	private static class Bucket implements Comparable<Bucket>
+	{
+		final int weight;
+		Entry first = null;
+		Entry last = null;
+
+		Bucket(int weight)
+		{
+			this.weight = weight;
+		}
+
+		void append(Entry entry)
+		{
+			if(last == null)
+				first = entry;
+			else
+			{
+				last.next = entry;
+				entry.previous = last;
+			}
+			last = entry;
+		}
+
+		@Override
+		public int compareTo(Bucket other)
+		{
+			return Integer.compare(weight, other.weight);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * VipsBasedSeparatorStore.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Detected separators of a run with their types, weights and adjacent areas kept in primitive arrays
+ * for the phases of separator sorting and filtering. The separators are addressed by their position
+ * in the actual order, the adjacent areas by their ids. The weights are taken when the store is created,
+ * the separator objects are only needed for the separators retained by the filtering.
+ */
+class VipsBasedSeparatorStore
+{
+	private final VipsBasedSeparator[] separators;
+	private final short[] types;
+	private final int[] weights;
+	private final int[] area1Ids;
+	private final int[] area2Ids;
+
+	/** Distinct adjacent areas by their ids and their horizontal bounds */
+	private final AreaImpl[] areas;
+	private final int[] areaX1;
+	private final int[] areaX2;
+
+	/** Indices of the separators in their actual order */
+	private int[] order;
+	private int size;
+
+	/**
+	 * Creates a store of separators in their actual order
+	 * @param separators stored separators
+	 */
+	VipsBasedSeparatorStore(List<VipsBasedSeparator> separators)
+	{
+		size = separators.size();
+		this.separators = separators.toArray(new VipsBasedSeparator[size]);
+		types = new short[size];
+		weights = new int[size];
+		area1Ids = new int[size];
+		area2Ids = new int[size];
+		order = new int[size];
+
+		Map<AreaImpl, Integer> areaIds = new IdentityHashMap<AreaImpl, Integer>();
+		List<AreaImpl> areaList = new ArrayList<AreaImpl>();
+		for (int i = 0; i < size; i++)
+		{
+			VipsBasedSeparator separator = this.separators[i];
+			types[i] = separator.getType();
+			weights[i] = separator.getWeight();
+			area1Ids[i] = getAreaId(separator.getArea1(), areaIds, areaList);
+			area2Ids[i] = getAreaId(separator.getArea2(), areaIds, areaList);
+			order[i] = i;
+		}
+
+		areas = areaList.toArray(new AreaImpl[areaList.size()]);
+		areaX1 = new int[areas.length];
+		areaX2 = new int[areas.length];
+		for (int i = 0; i < areas.length; i++)
+		{
+			areaX1[i] = areas[i].getX1();
+			areaX2[i] = areas[i].getX2();
+		}
+	}
+
+	private static int getAreaId(AreaImpl area, Map<AreaImpl, Integer> areaIds, List<AreaImpl> areaList)
+	{
+		if(area == null)
+			return -1;
+		Integer id = areaIds.get(area);
+		if(id == null)
+		{
+			id = areaList.size();
+			areaIds.put(area, id);
+			areaList.add(area);
+		}
+		return id;
+	}
+
+	/**
+	 * @return number of the separators in the actual order
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Sorts the separators ascending by weight, the separators with the same weight keep their order
+	 */
+	void sortByWeight()
+	{
+		//the index in the low bits makes the sort stable
+		long[] keys = new long[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = ((long) weights[order[i]] << 32) | order[i];
+		Arrays.sort(keys);
+		for (int i = 0; i < size; i++)
+			order[i] = (int) keys[i];
+	}
+
+	/**
+	 * Keeps only the retained separators in their actual order
+	 * @param retained flags of the retained separators by their positions
+	 */
+	void retain(boolean[] retained)
+	{
+		int count = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if(retained[i])
+				order[count++] = order[i];
+		}
+		size = count;
+	}
+
+	VipsBasedSeparator getSeparator(int position)
+	{
+		return separators[order[position]];
+	}
+
+	short getType(int position)
+	{
+		return types[order[position]];
+	}
+
+	/**
+	 * @return id of the first adjacent area, -1 for no area
+	 */
+	int getArea1(int position)
+	{
+		return area1Ids[order[position]];
+	}
+
+	/**
+	 * @return id of the second adjacent area, -1 for no area
+	 */
+	int getArea2(int position)
+	{
+		return area2Ids[order[position]];
+	}
+
+	/**
+	 * @return number of the distinct adjacent areas
+	 */
+	int getAreaCount()
+	{
+		return areas.length;
+	}
+
+	AreaImpl getArea(int id)
+	{
+		return areas[id];
+	}
+
+	int getAreaX1(int id)
+	{
+		return areaX1[id];
+	}
+
+	int getAreaX2(int id)
+	{
+		return areaX2[id];
+	}
+
+	/**
+	 * Replaces the content of a list by the separators in their actual order
+	 * @param target list of the separators
+	 */
+	void copyTo(List<VipsBasedSeparator> target)
+	{
+		target.clear();
+		for (int i = 0; i < size; i++)
+			target.add(separators[order[i]]);
+	}
+}
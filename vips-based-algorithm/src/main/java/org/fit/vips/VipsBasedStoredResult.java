@@ -0,0 +1,221 @@
+/**
+ * VipsBasedStoredResult.java
+ */
+package org.fit.vips;
+
+import java.nio.ByteBuffer;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Read only view of an encoded result of a segmentation. The values are read directly
+ * from the underlying buffer, which may be a part of a memory mapped file of a result store.
+ * The view is thread safe, the buffer isn't modified by it.
+ * @see VipsBasedResultCodec
+ */
+public class VipsBasedStoredResult
+{
+	private final ByteBuffer data;
+	private final int areaCount;
+	private final int blockCount;
+	private final int separatorCount;
+	private final int blockOffset;
+	private final int separatorOffset;
+
+	VipsBasedStoredResult(ByteBuffer data, int areaCount, int blockCount, int separatorCount)
+	{
+		this.data = data;
+		this.areaCount = areaCount;
+		this.blockCount = blockCount;
+		this.separatorCount = separatorCount;
+		this.blockOffset = VipsBasedResultCodec.headerSize + areaCount * VipsBasedResultCodec.areaSize;
+		this.separatorOffset = blockOffset + blockCount * VipsBasedResultCodec.blockSize;
+	}
+
+	/**
+	 * @return version of the format the result was encoded with
+	 */
+	public int getVersion()
+	{
+		return data.getInt(4);
+	}
+
+	/**
+	 * @return number of bytes of the encoded result
+	 */
+	public int getEncodedSize()
+	{
+		return separatorOffset + separatorCount * VipsBasedResultCodec.separatorSize;
+	}
+
+	/**
+	 * @return number of the areas of the output hierarchy, the areas are in the preorder
+	 */
+	public int getAreaCount()
+	{
+		return areaCount;
+	}
+
+	public int getAreaX1(int area)
+	{
+		return data.getInt(getAreaOffset(area));
+	}
+
+	public int getAreaY1(int area)
+	{
+		return data.getInt(getAreaOffset(area) + 4);
+	}
+
+	public int getAreaX2(int area)
+	{
+		return data.getInt(getAreaOffset(area) + 8);
+	}
+
+	public int getAreaY2(int area)
+	{
+		return data.getInt(getAreaOffset(area) + 12);
+	}
+
+	/**
+	 * @return index of the parent area, -1 for the root
+	 */
+	public int getAreaParent(int area)
+	{
+		return data.getInt(getAreaOffset(area) + 16);
+	}
+
+	public int getVisualBlockCount()
+	{
+		return blockCount;
+	}
+
+	/**
+	 * @return index of the area of a visual block, -1 if the area isn't in the output hierarchy
+	 */
+	public int getVisualBlockArea(int block)
+	{
+		return data.getInt(getBlockOffset(block));
+	}
+
+	public int getVisualBlockX1(int block)
+	{
+		return data.getInt(getBlockOffset(block) + 4);
+	}
+
+	public int getVisualBlockY1(int block)
+	{
+		return data.getInt(getBlockOffset(block) + 8);
+	}
+
+	public int getVisualBlockX2(int block)
+	{
+		return data.getInt(getBlockOffset(block) + 12);
+	}
+
+	public int getVisualBlockY2(int block)
+	{
+		return data.getInt(getBlockOffset(block) + 16);
+	}
+
+	/**
+	 * @return degree of coherence of a visual block
+	 */
+	public float getVisualBlockDoc(int block)
+	{
+		return data.getFloat(getBlockOffset(block) + 20);
+	}
+
+	public int getSeparatorCount()
+	{
+		return separatorCount;
+	}
+
+	public short getSeparatorType(int separator)
+	{
+		return (short) data.getInt(getSeparatorOffset(separator));
+	}
+
+	public int getSeparatorWeight(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 4);
+	}
+
+	public int getSeparatorX1(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 8);
+	}
+
+	public int getSeparatorY1(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 12);
+	}
+
+	public int getSeparatorX2(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 16);
+	}
+
+	public int getSeparatorY2(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 20);
+	}
+
+	/**
+	 * @return index of the first adjacent area of a separator, -1 if it isn't in the output hierarchy
+	 */
+	public int getSeparatorArea1(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 24);
+	}
+
+	/**
+	 * @return index of the second adjacent area of a separator, -1 if it isn't in the output hierarchy
+	 */
+	public int getSeparatorArea2(int separator)
+	{
+		return data.getInt(getSeparatorOffset(separator) + 28);
+	}
+
+	/**
+	 * Creates the output area hierarchy again, the areas have only their bounds
+	 * @return root of the hierarchy or null if the result has no areas
+	 */
+	public AreaImpl createAreaTree()
+	{
+		if(areaCount == 0)
+			return null;
+
+		AreaImpl[] areas = new AreaImpl[areaCount];
+		for (int i = 0; i < areaCount; i++)
+		{
+			areas[i] = new AreaImpl(getAreaX1(i), getAreaY1(i), getAreaX2(i), getAreaY2(i));
+			int parent = getAreaParent(i);
+			if(parent >= i || (parent < 0 && i > 0))
+				throw new IllegalStateException("Invalid parent of the area " + i + ": " + parent);
+			if(parent >= 0)
+				areas[parent].appendChild(areas[i]);
+		}
+		return areas[0];
+	}
+
+	private int getAreaOffset(int area)
+	{
+		if(area < 0 || area >= areaCount)
+			throw new IndexOutOfBoundsException("Area index: " + area);
+		return VipsBasedResultCodec.headerSize + area * VipsBasedResultCodec.areaSize;
+	}
+
+	private int getBlockOffset(int block)
+	{
+		if(block < 0 || block >= blockCount)
+			throw new IndexOutOfBoundsException("Visual block index: " + block);
+		return blockOffset + block * VipsBasedResultCodec.blockSize;
+	}
+
+	private int getSeparatorOffset(int separator)
+	{
+		if(separator < 0 || separator >= separatorCount)
+			throw new IndexOutOfBoundsException("Separator index: " + separator);
+		return separatorOffset + separator * VipsBasedResultCodec.separatorSize;
+	}
+}
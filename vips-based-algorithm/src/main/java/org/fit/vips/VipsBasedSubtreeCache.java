@@ -0,0 +1,534 @@
+/**
+ * VipsBasedSubtreeCache.java
+ */
+package org.fit.vips;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.vips.VipsBasedDivisionRecords.Replay;
+import org.fit.vips.VipsBasedRunContext.NestedDivision;
+import org.fit.vips.VipsBasedRunContext.SeparatorOperation;
+
+/**
+ * Cache of the divisions of subtrees shared by the runs of all the pages segmented with it,
+ * e.g. the same headers, footers and menus of the pages of one site. The divisions are kept
+ * by a fingerprint of the subtree computed from the tags, the geometry relative to the subtree root,
+ * the font and background properties and the text of its areas, so a division is spliced into
+ * the division of another page with an equal subtree instead of dividing the subtree again.
+ * Two subtrees of the same size with the same 64-bit fingerprint are considered equal.
+ * <p>
+ * Only the divisions, which didn't change the area tree, are cached. The size of the cache is the number
+ * of the cached visual blocks and operations with separators, the least recently used divisions
+ * are evicted when the size exceeds its maximum. The cache is thread safe.
+ */
+public class VipsBasedSubtreeCache
+{
+	/** Default maximal number of the cached visual blocks and operations with separators */
+	public static final int defaultMaxSize = 200000;
+
+	private final int maxSize;
+
+	/** Cached divisions in the access order, the least recently used one first */
+	private final LinkedHashMap<Key, CachedDivision> divisions = new LinkedHashMap<Key, CachedDivision>(16, 0.75f, true);
+	private int size = 0;
+
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	public VipsBasedSubtreeCache()
+	{
+		this(defaultMaxSize);
+	}
+
+	/**
+	 * @param maxSize maximal number of the cached visual blocks and operations with separators
+	 */
+	public VipsBasedSubtreeCache(int maxSize)
+	{
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return number of the cached visual blocks and operations with separators
+	 */
+	public synchronized int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return number of the cached divisions
+	 */
+	public synchronized int getDivisionCount()
+	{
+		return divisions.size();
+	}
+
+	/**
+	 * @return number of the subtrees found in the cache since the last clearing
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return number of the subtrees not found in the cache since the last clearing
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Forgets all the cached divisions and resets the counts
+	 */
+	public synchronized void clear()
+	{
+		divisions.clear();
+		size = 0;
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	/**
+	 * Computes fingerprints of the subtrees of given tree, which are big enough to be cached
+	 * @param root root of the tree
+	 * @param fingerprints map, the fingerprints are put into by the subtree roots
+	 */
+	static void computeFingerprints(AreaImpl root, Map<AreaImpl, Long> fingerprints)
+	{
+		computeFingerprints(root, fingerprints, new int[1]);
+	}
+
+	/**
+	 * @param areaCount number of the areas visited so far
+	 * @return fingerprint of the subtree
+	 */
+	private static long computeFingerprints(AreaImpl root, Map<AreaImpl, Long> fingerprints, int[] areaCount)
+	{
+		int firstArea = areaCount[0]++;
+		long hash = mix(17, root.getWidth());
+		hash = mix(hash, root.getHeight());
+
+		hash = mix(hash, root.getBoxes().size());
+		if(root.getBoxes().size() != 0)
+		{
+			Box box = root.getBoxes().get(0);
+			hash = mix(hash, hashString(box.getTagName()));
+			hash = mix(hash, box.getType() != null ? box.getType().ordinal() + 1 : 0);
+			hash = mix(hash, box.isVisible() ? 1 : 0);
+			//text is read only from the text nodes
+			if(box.getType() == Box.Type.TEXT_CONTENT)
+				hash = mix(hash, hashString(root.getText()));
+		}
+
+		hash = mix(hash, Float.floatToIntBits(root.getFontSize()));
+		hash = mix(hash, Float.floatToIntBits(root.getFontWeight()));
+		hash = mix(hash, Float.floatToIntBits(root.getFontStyle()));
+		hash = mix(hash, Float.floatToIntBits(root.getUnderline()));
+		hash = mix(hash, Float.floatToIntBits(root.getLineThrough()));
+		Color background = root.getBackgroundColor();
+		hash = mix(hash, background != null ? (1L << 32) | (background.getRGB() & 0xffffffffL) : 0);
+
+		hash = mix(hash, root.getChildCount());
+		for (Area child : root.getChildAreas())
+		{
+			hash = mix(hash, child.getX1() - root.getX1());
+			hash = mix(hash, child.getY1() - root.getY1());
+			hash = mix(hash, computeFingerprints((AreaImpl)child, fingerprints, areaCount));
+		}
+
+		if(areaCount[0] - firstArea >= VipsBasedDivisionRecords.minRecordedSubtreeSize)
+			fingerprints.put(root, hash);
+		return hash;
+	}
+
+	static long mix(long hash, long value)
+	{
+		hash = (hash + value) * 0x9e3779b97f4a7c15L;
+		return hash ^ (hash >>> 31);
+	}
+
+	static long hashString(String text)
+	{
+		if(text == null)
+			return 0;
+
+		//64-bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < text.length(); i++)
+			hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+		return hash;
+	}
+
+	/**
+	 * Finds a cached division of a subtree
+	 * @param fingerprint fingerprint of the subtree
+	 * @param subtreeSize number of the areas of the subtree
+	 * @param nonDividable true if the root is marked as a non dividable node
+	 * @param sizeThreshold area of the nodes considered small by the rules of the run
+	 * @return cached division or null if there is no such division
+	 */
+	synchronized CachedDivision get(long fingerprint, int subtreeSize, boolean nonDividable, double sizeThreshold)
+	{
+		CachedDivision division = divisions.get(new Key(fingerprint, subtreeSize, nonDividable, sizeThreshold));
+		if(division != null)
+			hitCount++;
+		else
+			missCount++;
+		return division;
+	}
+
+	private synchronized void put(Key key, CachedDivision division)
+	{
+		if(division.size > maxSize)
+			return;
+
+		CachedDivision previous = divisions.put(key, division);
+		size += division.size;
+		if(previous != null)
+			size -= previous.size;
+
+		Iterator<CachedDivision> eldest = divisions.values().iterator();
+		while (size > maxSize && eldest.hasNext())
+		{
+			size -= eldest.next().size;
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Caches the division of a subtree performed in a branch context, before the branch is joined.
+	 * The cached divisions of the nested subtrees replayed or recorded in the branch are referred.
+	 * @param root root of the divided subtree
+	 * @param fingerprint fingerprint of the subtree
+	 * @param nonDividable true if the root was marked as a non dividable node before the division
+	 * @param sizeThreshold area of the nodes considered small by the rules of the run
+	 * @param branch branch context of the division
+	 * @return cached division, null if the subtree isn't a subtree of the input tree
+	 * or if the division reaches outside of the subtree
+	 */
+	CachedDivision record(AreaImpl root, long fingerprint, boolean nonDividable, double sizeThreshold, VipsBasedRunContext branch)
+	{
+		Integer rootRank = branch.nodeRanks.get(root);
+		AreaImpl[] areas = new AreaImpl[branch.featureCache.get(root).getSubtreeSize()];
+		if(rootRank == null || collectAreas(root, 0, rootRank, branch.nodeRanks, areas) != areas.length)
+			return null;
+
+		CachedDivision division = new CachedDivision(branch.docValue, branch.docValueIsKnown);
+		int block = 0;
+		int operation = 0;
+		for (NestedDivision nested : branch.nestedDivisions)
+		{
+			//nested divisions, which aren't cached, are recorded as parts of this division
+			if(nested.cachedDivision == null)
+				continue;
+			int offset = indexOf(nested.root, rootRank, branch.nodeRanks, areas);
+			if(offset == -1 || !recordParts(division, branch, rootRank, areas, block, nested.firstBlock, operation, nested.firstOperation))
+				return null;
+			division.parts.add(new NestedPart(offset, nested.cachedDivision));
+			division.size += nested.cachedDivision.size;
+			block = nested.endBlock;
+			operation = nested.endOperation;
+		}
+		if(!recordParts(division, branch, rootRank, areas, block, branch.visualBlocksPool.size(), operation, branch.separatorOperations.size()))
+			return null;
+
+		put(new Key(fingerprint, areas.length, nonDividable, sizeThreshold), division);
+		return division;
+	}
+
+	/**
+	 * Collects the areas of a subtree of the input tree in the preorder, which is the order of the node ranks
+	 * @param area root of the collected subtree
+	 * @param index index of the area in the collected areas
+	 * @return index after the last area of the subtree, -1 if the subtree was changed since the nodes were ranked
+	 */
+	private static int collectAreas(AreaImpl area, int index, int rootRank, Map<AreaImpl, Integer> nodeRanks, AreaImpl[] areas)
+	{
+		Integer rank = nodeRanks.get(area);
+		if(index >= areas.length || rank == null || rank != rootRank + index)
+			return -1;
+
+		areas[index++] = area;
+		for (Area child : area.getChildAreas())
+		{
+			index = collectAreas((AreaImpl)child, index, rootRank, nodeRanks, areas);
+			if(index == -1)
+				return -1;
+		}
+		return index;
+	}
+
+	/**
+	 * @return index of an area in the collected areas of a subtree, -1 if the area isn't in the subtree
+	 */
+	private static int indexOf(Area area, int rootRank, Map<AreaImpl, Integer> nodeRanks, AreaImpl[] areas)
+	{
+		Integer rank = nodeRanks.get(area);
+		if(rank == null)
+			return -1;
+		int index = rank - rootRank;
+		if(index < 0 || index >= areas.length || areas[index] != area)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Records visual blocks and operations with separators of a branch, which don't belong to a nested cached division
+	 * @return false if some area of the blocks or operations isn't in the subtree
+	 */
+	private boolean recordParts(CachedDivision division, VipsBasedRunContext branch, int rootRank, AreaImpl[] areas,
+			int firstBlock, int endBlock, int firstOperation, int endOperation)
+	{
+		for (int i = firstBlock; i < endBlock; i++)
+		{
+			VipsBasedVisualBlock block = branch.visualBlocksPool.get(i);
+			int index = indexOf(block.getArea(), rootRank, branch.nodeRanks, areas);
+			if(index == -1)
+				return false;
+			division.parts.add(new CachedBlock(index, block.getDoc()));
+			division.size++;
+		}
+		for (int i = firstOperation; i < endOperation; i++)
+		{
+			CachedOperation cached = recordOperation(branch.separatorOperations.get(i), rootRank, branch.nodeRanks, areas);
+			if(cached == null)
+				return false;
+			division.parts.add(cached);
+			division.size++;
+		}
+		return true;
+	}
+
+	private CachedOperation recordOperation(SeparatorOperation operation, int rootRank, Map<AreaImpl, Integer> nodeRanks, AreaImpl[] areas)
+	{
+		if(operation.separator != null)
+		{
+			//only separators of the input tree nodes, the rules add separators after changes of the tree
+			int node = operation.nodeRank - rootRank;
+			if(operation.nodeRank == -1 || node < 0 || node >= areas.length)
+				return null;
+			VipsBasedSeparator separator = operation.separator;
+			int area1 = -1;
+			int area2 = -1;
+			if(separator.getArea1() != null && (area1 = indexOf(separator.getArea1(), rootRank, nodeRanks, areas)) == -1)
+				return null;
+			if(separator.getArea2() != null && (area2 = indexOf(separator.getArea2(), rootRank, nodeRanks, areas)) == -1)
+				return null;
+			//the position is kept relative to the subtree root
+			int x = areas[0].getX1();
+			int y = areas[0].getY1();
+			VipsBasedSeparator relative = new VipsBasedSeparator(separator.getType(), separator.getX1() - x, separator.getY1() - y,
+					separator.getX2() - x, separator.getY2() - y);
+			return new CachedOperation(relative, area1, area2, node, null, null);
+		}
+
+		int root = indexOf(operation.root, rootRank, nodeRanks, areas);
+		if(root == -1)
+			return null;
+		int[] children = new int[operation.children.size()];
+		for (int i = 0; i < children.length; i++)
+		{
+			children[i] = indexOf(operation.children.get(i), rootRank, nodeRanks, areas);
+			if(children[i] == -1)
+				return null;
+		}
+		return new CachedOperation(null, -1, -1, root, children, operation.validChildren);
+	}
+
+	/**
+	 * Translates a cached division to the areas of a subtree of the input tree
+	 * @param division cached division
+	 * @param root root of the subtree
+	 * @param subtreeSize number of the areas of the subtree
+	 * @param nodeRanks ranks of the nodes of the input tree
+	 * @return visual blocks and operations with separators of the division in the cached order,
+	 * null if the subtree was changed since the nodes were ranked
+	 */
+	Replay replay(CachedDivision division, AreaImpl root, int subtreeSize, Map<AreaImpl, Integer> nodeRanks)
+	{
+		Integer rootRank = nodeRanks.get(root);
+		AreaImpl[] areas = new AreaImpl[subtreeSize];
+		if(rootRank == null || collectAreas(root, 0, rootRank, nodeRanks, areas) != areas.length)
+			return null;
+
+		Replay result = new Replay();
+		replayParts(division, areas, 0, rootRank, result);
+		return result;
+	}
+
+	/**
+	 * @param base index of the root of the replayed division in the collected areas
+	 */
+	private void replayParts(CachedDivision division, AreaImpl[] areas, int base, int rootRank, Replay result)
+	{
+		for (Object part : division.parts)
+		{
+			if(part instanceof NestedPart)
+			{
+				NestedPart nested = (NestedPart) part;
+				replayParts(nested.division, areas, base + nested.offset, rootRank, result);
+			}
+			else if(part instanceof CachedBlock)
+			{
+				CachedBlock block = (CachedBlock) part;
+				result.blockAreas.add(areas[base + block.area]);
+				result.blockDocs.add(block.doc);
+			}
+			else
+				result.operations.add(replayOperation((CachedOperation) part, areas, base, rootRank));
+		}
+	}
+
+	private SeparatorOperation replayOperation(CachedOperation operation, AreaImpl[] areas, int base, int rootRank)
+	{
+		if(operation.separator != null)
+		{
+			int x = areas[base].getX1();
+			int y = areas[base].getY1();
+			VipsBasedSeparator relative = operation.separator;
+			VipsBasedSeparator separator = new VipsBasedSeparator(relative.getType(), relative.getX1() + x, relative.getY1() + y,
+					relative.getX2() + x, relative.getY2() + y);
+			if(operation.area1 != -1)
+				separator.setArea1(areas[base + operation.area1]);
+			if(operation.area2 != -1)
+				separator.setArea2(areas[base + operation.area2]);
+			return new SeparatorOperation(separator, rootRank + base + operation.node);
+		}
+
+		List<Area> children = new ArrayList<Area>(operation.children.length);
+		for (int child : operation.children)
+			children.add(areas[base + child]);
+		return new SeparatorOperation(areas[base + operation.node], children, operation.validChildren);
+	}
+
+	/**
+	 * Division of a subtree kept by the preorder indices of its areas
+	 */
+	static class CachedDivision
+	{
+		/** Degree of coherence value left by the rules after the division */
+		final float docValue;
+		final boolean docValueIsKnown;
+
+		/** Visual blocks, operations with separators and nested divisions in the order of the division */
+		private final List<Object> parts = new ArrayList<Object>();
+		/** Number of the visual blocks and operations with separators including the nested divisions */
+		private int size = 0;
+
+		CachedDivision(float docValue, boolean docValueIsKnown)
+		{
+			this.docValue = docValue;
+			this.docValueIsKnown = docValueIsKnown;
+		}
+	}
+
+	/**
+	 * Cached division of a nested subtree
+	 */
+	private static class NestedPart
+	{
+		/** Index of the root of the nested subtree */
+		final int offset;
+		final CachedDivision division;
+
+		NestedPart(int offset, CachedDivision division)
+		{
+			this.offset = offset;
+			this.division = division;
+		}
+	}
+
+	/**
+	 * Visual block of an area of the subtree
+	 */
+	private static class CachedBlock
+	{
+		final int area;
+		final float doc;
+
+		CachedBlock(int area, float doc)
+		{
+			this.area = area;
+			this.doc = doc;
+		}
+	}
+
+	/**
+	 * Cached operation with separators kept by the preorder indices of the areas, either an addition
+	 * of a separator of an input tree node or a reconfiguration of separators adjacent to a divided node
+	 */
+	private static class CachedOperation
+	{
+		/** Added separator positioned relative to the subtree root and not bound to areas, null for a reconfiguration */
+		final VipsBasedSeparator separator;
+		/** Areas the separator is bound to, -1 for no area */
+		final int area1;
+		final int area2;
+		/** Node, whose separator is added, or the reconfigured node */
+		final int node;
+		final int[] children;
+		final boolean[] validChildren;
+
+		CachedOperation(VipsBasedSeparator separator, int area1, int area2, int node, int[] children, boolean[] validChildren)
+		{
+			this.separator = separator;
+			this.area1 = area1;
+			this.area2 = area2;
+			this.node = node;
+			this.children = children;
+			this.validChildren = validChildren;
+		}
+	}
+
+	/**
+	 * Key of a cached division
+	 */
+	private static class Key
+	{
+		final long fingerprint;
+		final int subtreeSize;
+		final boolean nonDividable;
+		final long sizeThreshold;
+
+		Key(long fingerprint, int subtreeSize, boolean nonDividable, double sizeThreshold)
+		{
+			this.fingerprint = fingerprint;
+			this.subtreeSize = subtreeSize;
+			this.nonDividable = nonDividable;
+			this.sizeThreshold = Double.doubleToLongBits(sizeThreshold);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return fingerprint == other.fingerprint && subtreeSize == other.subtreeSize
+					&& nonDividable == other.nonDividable && sizeThreshold == other.sizeThreshold;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long hash = fingerprint ^ (sizeThreshold * 31) ^ subtreeSize;
+			return (int)(hash ^ (hash >>> 32)) ^ (nonDividable ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * VipsBasedTagClassifier.java
+ */
+package org.fit.vips;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.fit.layout.model.Box;
+
+/**
+ * Classifies boxes to the categories of HTML tags distinguished by the heuristic rules.
+ * The category of every box is computed once and cached until the classifier is cleared.
+ */
+public class VipsBasedTagClassifier
+{
+	/**
+	 * Categories of HTML tags
+	 */
+	public enum TagCategory
+	{
+		/** Inline text element */
+		INLINE,
+		TABLE,
+		TR,
+		TD,
+		P,
+		HR,
+		BR,
+		THEAD,
+		/** Any other tag */
+		OTHER,
+		/** No tag name available */
+		NONE
+	}
+
+	private static final String[] inlineTags = { "b", "big", "i", "small", "tt", "abbr", "acronym", "cite", "code", "dfn",
+		"em", "kbd", "strong", "samp", "time", "var", "a", "bdo", "q", "span", "sub", "sup", "label", "u", "s", "strike",
+		"del", "ins", "mark", "ruby" };
+
+	private static final Map<String, TagCategory> tagCategories = new HashMap<String, TagCategory>();
+
+	static
+	{
+		for (String tagName : inlineTags)
+			tagCategories.put(tagName, TagCategory.INLINE);
+		tagCategories.put("table", TagCategory.TABLE);
+		tagCategories.put("tr", TagCategory.TR);
+		tagCategories.put("td", TagCategory.TD);
+		tagCategories.put("p", TagCategory.P);
+		tagCategories.put("hr", TagCategory.HR);
+		tagCategories.put("br", TagCategory.BR);
+		tagCategories.put("thead", TagCategory.THEAD);
+	}
+
+	private final Map<Box, TagCategory> boxCategories = new IdentityHashMap<Box, TagCategory>();
+
+	/**
+	 * Returns the category of given tag name
+	 * @param tagName HTML tag name (case sensitive)
+	 * @return category of the tag, NONE for a null tag name
+	 */
+	public static TagCategory classify(String tagName)
+	{
+		if(tagName == null)
+			return TagCategory.NONE;
+
+		TagCategory category = tagCategories.get(tagName);
+		if(category == null)
+			return TagCategory.OTHER;
+		else
+			return category;
+	}
+
+	/**
+	 * Returns the category of the tag of given box
+	 * @param box classified box
+	 * @return category of the box's tag, NONE for a null box or a box without a tag name
+	 */
+	public TagCategory classify(Box box)
+	{
+		if(box == null)
+			return TagCategory.NONE;
+
+		TagCategory category = boxCategories.get(box);
+		if(category == null)
+		{
+			category = classify(box.getTagName());
+			boxCategories.put(box, category);
+		}
+		return category;
+	}
+
+	/**
+	 * Forgets all the cached categories
+	 */
+	public void clear()
+	{
+		boxCategories.clear();
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ * VipsBasedTemplateProfile.java
+ */
+package org.fit.vips;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Layout template of the pages of one site learned from the first pages segmented with it.
+ * The subtrees of a page are identified by their DOM path, i.e. the tags and the indices of the areas
+ * from the page root. A path belongs to the template, when its subtree had the same fingerprint
+ * on at least half of the learning pages, e.g. a header, a menu or a footer.
+ * <p>
+ * The divisions of the template subtrees are kept in the subtree cache of the profile and they are spliced
+ * into the following pages instead of evaluating the rules and detecting the separators again.
+ * A page, which deviates from the template, i.e. its subtree on a template path has another fingerprint,
+ * is divided by the full evaluation of the rules there. The divisions of the other subtrees aren't cached
+ * after the learning. All the pages of a profile should come from one site, the profile is thread safe.
+ */
+public class VipsBasedTemplateProfile
+{
+	/** Default number of the learning pages */
+	public static final int defaultLearningPages = 10;
+
+	/** Minimal share of the learning pages with the same subtree on a template path */
+	private static final float minTemplateShare = 0.5f;
+
+	private final int learningPages;
+	private final VipsBasedSubtreeCache subtreeCache;
+
+	/** Subtrees seen on the learning pages by their paths, numbers of the pages by the fingerprints in the order of their appearance */
+	private final Map<Long, Map<Long, int[]>> learnedPaths = new HashMap<Long, Map<Long, int[]>>();
+	private int learnedPages = 0;
+
+	/** Fingerprints of the template subtrees by their paths, null while learning */
+	private volatile Map<Long, Long> templatePaths = null;
+
+	private final AtomicLong matchCount = new AtomicLong();
+	private final AtomicLong deviationCount = new AtomicLong();
+
+	public VipsBasedTemplateProfile()
+	{
+		this(defaultLearningPages, new VipsBasedSubtreeCache());
+	}
+
+	/**
+	 * @param learningPages number of the first pages the template is learned from
+	 * @param subtreeCache cache of the divisions of the template subtrees
+	 */
+	public VipsBasedTemplateProfile(int learningPages, VipsBasedSubtreeCache subtreeCache)
+	{
+		this.learningPages = learningPages;
+		this.subtreeCache = subtreeCache;
+	}
+
+	public int getLearningPages()
+	{
+		return learningPages;
+	}
+
+	public VipsBasedSubtreeCache getSubtreeCache()
+	{
+		return subtreeCache;
+	}
+
+	/**
+	 * @return true if the template is already learned
+	 */
+	public boolean isLearned()
+	{
+		return templatePaths != null;
+	}
+
+	/**
+	 * @return number of the paths of the template, 0 while learning
+	 */
+	public int getTemplateSize()
+	{
+		Map<Long, Long> paths = templatePaths;
+		return paths != null ? paths.size() : 0;
+	}
+
+	/**
+	 * @return number of the subtrees of the pages after the learning, which matched the template
+	 */
+	public long getMatchCount()
+	{
+		return matchCount.get();
+	}
+
+	/**
+	 * @return number of the subtrees of the pages after the learning, which deviated from the template
+	 */
+	public long getDeviationCount()
+	{
+		return deviationCount.get();
+	}
+
+	/**
+	 * Computes the paths of the subtrees of a page, which have a fingerprint
+	 * @param root root of the page
+	 * @param fingerprints fingerprints of the subtrees of the page
+	 * @param paths map, the paths are put into by the subtree roots
+	 */
+	static void computePaths(AreaImpl root, Map<AreaImpl, Long> fingerprints, Map<AreaImpl, Long> paths)
+	{
+		computePaths(root, VipsBasedSubtreeCache.mix(17, getTagHash(root)), fingerprints, paths);
+	}
+
+	private static void computePaths(AreaImpl root, long path, Map<AreaImpl, Long> fingerprints, Map<AreaImpl, Long> paths)
+	{
+		//subtrees of an area without a fingerprint are too small to have one
+		if(!fingerprints.containsKey(root))
+			return;
+
+		paths.put(root, path);
+		for (int i = 0; i < root.getChildCount(); i++)
+		{
+			AreaImpl child = (AreaImpl) root.getChildArea(i);
+			computePaths(child, VipsBasedSubtreeCache.mix(VipsBasedSubtreeCache.mix(path, i), getTagHash(child)), fingerprints, paths);
+		}
+	}
+
+	private static long getTagHash(Area area)
+	{
+		if(area.getBoxes().size() == 0)
+			return 0;
+		return VipsBasedSubtreeCache.hashString(area.getBoxes().get(0).getTagName());
+	}
+
+	/**
+	 * Learns the subtrees of a page, if the template isn't learned yet
+	 * @param paths paths of the subtrees of the page
+	 * @param fingerprints fingerprints of the subtrees of the page
+	 */
+	synchronized void learn(Map<AreaImpl, Long> paths, Map<AreaImpl, Long> fingerprints)
+	{
+		if(templatePaths != null)
+			return;
+
+		for (Map.Entry<AreaImpl, Long> entry : paths.entrySet())
+		{
+			Long fingerprint = fingerprints.get(entry.getKey());
+			Map<Long, int[]> learned = learnedPaths.get(entry.getValue());
+			if(learned == null)
+			{
+				learned = new LinkedHashMap<Long, int[]>();
+				learnedPaths.put(entry.getValue(), learned);
+			}
+			int[] pages = learned.get(fingerprint);
+			if(pages == null)
+				learned.put(fingerprint, new int[] { 1 });
+			else
+				pages[0]++;
+		}
+
+		learnedPages++;
+		if(learnedPages >= learningPages)
+		{
+			int minPages = Math.max(1, (int) Math.ceil(minTemplateShare * learnedPages));
+			Map<Long, Long> template = new HashMap<Long, Long>();
+			for (Map.Entry<Long, Map<Long, int[]>> entry : learnedPaths.entrySet())
+			{
+				//the most frequent fingerprint of the path, the first seen one of the equally frequent ones
+				Long fingerprint = null;
+				int maxPages = 0;
+				for (Map.Entry<Long, int[]> learned : entry.getValue().entrySet())
+				{
+					if(learned.getValue()[0] > maxPages)
+					{
+						fingerprint = learned.getKey();
+						maxPages = learned.getValue()[0];
+					}
+				}
+				if(maxPages >= minPages)
+					template.put(entry.getKey(), fingerprint);
+			}
+			learnedPaths.clear();
+			templatePaths = Collections.unmodifiableMap(template);
+		}
+	}
+
+	/**
+	 * Checks, if the division of a subtree should be taken from the cache or cached
+	 * @param path path of the subtree
+	 * @param fingerprint fingerprint of the subtree
+	 * @return true while learning or if the subtree matches the template on its path
+	 */
+	boolean isTemplateSubtree(long path, long fingerprint)
+	{
+		Map<Long, Long> paths = templatePaths;
+		if(paths == null)
+			return true;
+
+		Long templateFingerprint = paths.get(path);
+		if(templateFingerprint == null)
+			return false;
+		if(templateFingerprint == fingerprint)
+		{
+			matchCount.incrementAndGet();
+			return true;
+		}
+		deviationCount.incrementAndGet();
+		return false;
+	}
+}
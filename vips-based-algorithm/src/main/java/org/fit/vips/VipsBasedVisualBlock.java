@@ -0,0 +1,133 @@
+/**
+ * VipsBasedVisualBlock.java
+ */
+package org.fit.vips;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+import org.fit.layout.model.Box;
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Visual block from VIPS perspective
+ * @author Michal Malanik
+ */
+public class VipsBasedVisualBlock {
+	
+	private Box block;
+	private AreaImpl area;
+	private float doc;
+	private AreaImpl domNode;
+	private AreaImpl domNodeSource;
+	private List<Area> domNodeChildren;
+	
+	public void setBlock(Box visualBlock)
+	{
+		this.block = visualBlock;
+	}
+	
+	public Box getBlock()
+	{
+		return block;
+	}
+	
+	public void setArea(AreaImpl visualBlockArea)
+	{
+		this.area = visualBlockArea;
+	}
+	
+	public AreaImpl getArea()
+	{
+		return area;
+	}
+	
+	public void setDoc(float doc)
+	{
+		this.doc = doc;
+	}
+	
+	public float getDoc()
+	{
+		return doc;
+	}
+	
+	/**
+	 * Sets the DOM node of the visual block. No copy is made here, the list of its children
+	 * is saved by {@link #preserveDomNodeChildren()} before the children are removed from the node.
+	 */
+	public void setDomNode(AreaImpl visualBlockDomNode)
+	{
+		this.domNodeSource = visualBlockDomNode;
+		this.domNodeChildren = null;
+		this.domNode = null;
+	}
+	
+	/**
+	 * Saves the list of children of the DOM node. The child subtrees are shared, not copied.
+	 */
+	public void preserveDomNodeChildren()
+	{
+		if(domNodeChildren == null && domNodeSource != null)
+			domNodeChildren = new ArrayList<Area>(domNodeSource.getChildAreas());
+	}
+	
+	/**
+	 * Returns children of the DOM node, as they were before they were removed from the node.
+	 * @return unmodifiable list of the children
+	 */
+	public List<Area> getDomNodeChildren()
+	{
+		if(domNodeChildren != null)
+			return Collections.unmodifiableList(domNodeChildren);
+		else if(domNodeSource != null)
+			return Collections.unmodifiableList(domNodeSource.getChildAreas());
+		else
+			return Collections.emptyList();
+	}
+	
+	/**
+	 * Returns the saved children of the DOM node, which are going to be appended to the node again
+	 * and divided. The copy of the DOM node subtree is made before, so it isn't affected by the division.
+	 * @return list of the children
+	 */
+	public List<Area> restoreDomNodeChildren()
+	{
+		getDomNode();
+		return new ArrayList<Area>(getDomNodeChildren());
+	}
+	
+	private void copyChildAreas(AreaImpl target, AreaImpl source)
+	{
+		AreaImpl newChild = null;
+		for (Area child : source.getChildAreas())
+		{
+			newChild = new AreaImpl((AreaImpl)child);
+			target.appendChild(newChild);
+			copyChildAreas(newChild, (AreaImpl)child);
+		}
+	}
+	
+	/**
+	 * Returns a copy of the DOM node subtree. The copy is made on the first call, at the latest
+	 * when the saved children are restored by {@link #restoreDomNodeChildren()}, so it keeps
+	 * the subtree as it was before the children were divided again.
+	 */
+	public AreaImpl getDomNode()
+	{
+		if(domNode == null && domNodeSource != null)
+		{
+			AreaImpl newChild = null;
+			domNode = new AreaImpl(domNodeSource);
+			for (Area child : getDomNodeChildren())
+			{
+				newChild = new AreaImpl((AreaImpl)child);
+				domNode.appendChild(newChild);
+				copyChildAreas(newChild, (AreaImpl)child);
+			}
+		}
+		return domNode;
+	}
+}
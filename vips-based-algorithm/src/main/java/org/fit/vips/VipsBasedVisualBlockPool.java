@@ -0,0 +1,195 @@
+/**
+ * VipsBasedVisualBlockPool.java
+ */
+package org.fit.vips;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fit.segm.grouping.AreaImpl;
+
+/**
+ * Ordered pool of visual blocks with constant time lookup of the blocks by their areas.
+ * The area of a pooled visual block must not be changed.
+ */
+public class VipsBasedVisualBlockPool extends AbstractList<VipsBasedVisualBlock>
+{
+	private final List<VipsBasedVisualBlock> blocks = new ArrayList<VipsBasedVisualBlock>();
+
+	/** Pooled visual blocks of every area in the pool order */
+	private final Map<AreaImpl, List<VipsBasedVisualBlock>> areaBlocks = new IdentityHashMap<AreaImpl, List<VipsBasedVisualBlock>>();
+
+	@Override
+	public VipsBasedVisualBlock get(int index)
+	{
+		return blocks.get(index);
+	}
+
+	@Override
+	public int size()
+	{
+		return blocks.size();
+	}
+
+	@Override
+	public void add(int index, VipsBasedVisualBlock block)
+	{
+		blocks.add(index, block);
+		modCount++;
+		register(block, index == blocks.size() - 1);
+	}
+
+	@Override
+	public VipsBasedVisualBlock set(int index, VipsBasedVisualBlock block)
+	{
+		VipsBasedVisualBlock previous = blocks.set(index, block);
+		unregister(previous);
+		register(block, false);
+		return previous;
+	}
+
+	@Override
+	public VipsBasedVisualBlock remove(int index)
+	{
+		VipsBasedVisualBlock previous = blocks.remove(index);
+		modCount++;
+		unregister(previous);
+		return previous;
+	}
+
+	@Override
+	public void clear()
+	{
+		blocks.clear();
+		areaBlocks.clear();
+		modCount++;
+	}
+
+	/**
+	 * Checks, if the pool contains a visual block. An area is never contained, {@link #containsArea(AreaImpl)}
+	 * checks the areas of the visual blocks.
+	 */
+	@Override
+	public boolean contains(Object object)
+	{
+		if(!(object instanceof VipsBasedVisualBlock))
+			return false;
+
+		List<VipsBasedVisualBlock> sameAreaBlocks = areaBlocks.get(((VipsBasedVisualBlock) object).getArea());
+		if(sameAreaBlocks != null)
+		{
+			for (VipsBasedVisualBlock block : sameAreaBlocks)
+			{
+				if(block.equals(object))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks, if given area is an area of some visual block
+	 * @param area checked area
+	 * @return true if the area forms a visual block, false otherwise
+	 */
+	public boolean containsArea(AreaImpl area)
+	{
+		return area != null && areaBlocks.containsKey(area);
+	}
+
+	/**
+	 * Finds the visual block of given area
+	 * @param area area of the visual block
+	 * @return the first visual block in the pool with given area or null
+	 */
+	public VipsBasedVisualBlock getBlock(AreaImpl area)
+	{
+		if(area == null)
+			return null;
+
+		List<VipsBasedVisualBlock> sameAreaBlocks = areaBlocks.get(area);
+		if(sameAreaBlocks == null)
+			return null;
+		else
+			return sameAreaBlocks.get(0);
+	}
+
+	/**
+	 * Finds all the visual blocks of given area
+	 * @param area area of the visual blocks
+	 * @return unmodifiable list of the visual blocks in the pool order
+	 */
+	public List<VipsBasedVisualBlock> getBlocks(AreaImpl area)
+	{
+		if(area == null)
+			return Collections.emptyList();
+
+		List<VipsBasedVisualBlock> sameAreaBlocks = areaBlocks.get(area);
+		if(sameAreaBlocks == null)
+			return Collections.emptyList();
+		else
+			return Collections.unmodifiableList(sameAreaBlocks);
+	}
+
+	private void register(VipsBasedVisualBlock block, boolean appended)
+	{
+		if(block.getArea() == null)
+			return;
+
+		List<VipsBasedVisualBlock> sameAreaBlocks = areaBlocks.get(block.getArea());
+		if(sameAreaBlocks == null)
+		{
+			sameAreaBlocks = new ArrayList<VipsBasedVisualBlock>(1);
+			areaBlocks.put(block.getArea(), sameAreaBlocks);
+		}
+		sameAreaBlocks.add(block);
+		if(!appended && sameAreaBlocks.size() > 1)
+			sortByPoolOrder(sameAreaBlocks);
+	}
+
+	private void unregister(VipsBasedVisualBlock block)
+	{
+		if(block.getArea() == null)
+			return;
+
+		List<VipsBasedVisualBlock> sameAreaBlocks = areaBlocks.get(block.getArea());
+		if(sameAreaBlocks == null)
+			return;
+
+		for (int i = 0; i < sameAreaBlocks.size(); i++)
+		{
+			if(sameAreaBlocks.get(i) == block)
+			{
+				sameAreaBlocks.remove(i);
+				break;
+			}
+		}
+		if(sameAreaBlocks.isEmpty())
+			areaBlocks.remove(block.getArea());
+	}
+
+	/**
+	 * Restores the pool order of blocks with the same area after an insertion into the middle of the pool
+	 */
+	private void sortByPoolOrder(List<VipsBasedVisualBlock> sameAreaBlocks)
+	{
+		List<VipsBasedVisualBlock> sorted = new ArrayList<VipsBasedVisualBlock>(sameAreaBlocks.size());
+		for (VipsBasedVisualBlock block : blocks)
+		{
+			for (VipsBasedVisualBlock sameAreaBlock : sameAreaBlocks)
+			{
+				if(sameAreaBlock == block)
+				{
+					sorted.add(block);
+					break;
+				}
+			}
+		}
+		sameAreaBlocks.clear();
+		sameAreaBlocks.addAll(sorted);
+	}
+}
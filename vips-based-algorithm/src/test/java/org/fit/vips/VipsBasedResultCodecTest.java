@@ -0,0 +1,211 @@
+/**
+ * VipsBasedResultCodecTest.java
+ */
+package org.fit.vips;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fit.layout.model.Area;
+import org.fit.segm.grouping.AreaImpl;
+import org.fit.segm.grouping.op.Separator;
+import org.junit.Test;
+
+/**
+ * Encoding and decoding of the results of segmentations
+ */
+public class VipsBasedResultCodecTest
+{
+	@Test
+	public void decodesEncodedResult()
+	{
+		AreaImpl root = new AreaImpl(0, 0, 100, 200);
+		AreaImpl top = new AreaImpl(0, 0, 100, 90);
+		AreaImpl bottom = new AreaImpl(0, 110, 100, 200);
+		AreaImpl left = new AreaImpl(0, 110, 40, 200);
+		root.appendChild(top);
+		root.appendChild(bottom);
+		bottom.appendChild(left);
+
+		List<VipsBasedVisualBlock> blocks = new ArrayList<VipsBasedVisualBlock>();
+		blocks.add(createBlock(top, 0.8f));
+		blocks.add(createBlock(left, 0.25f));
+		//area outside of the output hierarchy
+		blocks.add(createBlock(new AreaImpl(5, 6, 7, 8), 1f));
+
+		List<VipsBasedSeparator> separators = new ArrayList<VipsBasedSeparator>();
+		VipsBasedSeparator horizontal = new VipsBasedSeparator(Separator.HORIZONTAL, 0, 91, 100, 109);
+		horizontal.setArea1(top);
+		horizontal.setArea2(bottom);
+		separators.add(horizontal);
+		separators.add(new VipsBasedSeparator(Separator.VERTICAL, 41, 110, 45, 200));
+
+		ByteBuffer encoded = VipsBasedResultCodec.encode(root, blocks, separators);
+		assertEquals(VipsBasedResultCodec.getEncodedSize(4, 3, 2), encoded.remaining());
+		VipsBasedStoredResult result = VipsBasedResultCodec.decode(encoded);
+
+		assertEquals(VipsBasedResultCodec.version, result.getVersion());
+		assertEquals(encoded.remaining(), result.getEncodedSize());
+
+		//areas in the preorder
+		assertEquals(4, result.getAreaCount());
+		assertArea(result, 0, root, -1);
+		assertArea(result, 1, top, 0);
+		assertArea(result, 2, bottom, 0);
+		assertArea(result, 3, left, 2);
+
+		assertEquals(3, result.getVisualBlockCount());
+		assertEquals(1, result.getVisualBlockArea(0));
+		assertEquals(3, result.getVisualBlockArea(1));
+		assertEquals(-1, result.getVisualBlockArea(2));
+		assertEquals(0.8f, result.getVisualBlockDoc(0), 0f);
+		assertEquals(0.25f, result.getVisualBlockDoc(1), 0f);
+		assertEquals(5, result.getVisualBlockX1(2));
+		assertEquals(6, result.getVisualBlockY1(2));
+		assertEquals(7, result.getVisualBlockX2(2));
+		assertEquals(8, result.getVisualBlockY2(2));
+
+		assertEquals(2, result.getSeparatorCount());
+		for (int i = 0; i < separators.size(); i++)
+		{
+			VipsBasedSeparator separator = separators.get(i);
+			assertEquals(separator.getType(), result.getSeparatorType(i));
+			assertEquals(separator.getWeight(), result.getSeparatorWeight(i));
+			assertEquals(separator.getX1(), result.getSeparatorX1(i));
+			assertEquals(separator.getY1(), result.getSeparatorY1(i));
+			assertEquals(separator.getX2(), result.getSeparatorX2(i));
+			assertEquals(separator.getY2(), result.getSeparatorY2(i));
+		}
+		assertEquals(1, result.getSeparatorArea1(0));
+		assertEquals(2, result.getSeparatorArea2(0));
+		assertEquals(-1, result.getSeparatorArea1(1));
+		assertEquals(-1, result.getSeparatorArea2(1));
+
+		//the decoding doesn't change the buffer
+		assertEquals(0, encoded.position());
+	}
+
+	@Test
+	public void createsAreaTreeAgain()
+	{
+		AreaImpl root = new AreaImpl(0, 0, 50, 50);
+		AreaImpl child = new AreaImpl(0, 0, 50, 20);
+		AreaImpl grandChild = new AreaImpl(0, 0, 10, 20);
+		root.appendChild(child);
+		child.appendChild(grandChild);
+		root.appendChild(new AreaImpl(0, 30, 50, 50));
+
+		AreaImpl decoded = VipsBasedResultCodec.decode(VipsBasedResultCodec.encode(root,
+				new ArrayList<VipsBasedVisualBlock>(), new ArrayList<VipsBasedSeparator>())).createAreaTree();
+		assertSameTree(root, decoded);
+	}
+
+	@Test
+	public void decodesResultInLargerBuffer()
+	{
+		ByteBuffer encoded = VipsBasedResultCodec.encode(new AreaImpl(1, 2, 3, 4),
+				new ArrayList<VipsBasedVisualBlock>(), new ArrayList<VipsBasedSeparator>());
+		ByteBuffer buffer = ByteBuffer.allocate(encoded.remaining() + 10);
+		buffer.position(7);
+		buffer.put(encoded);
+		buffer.position(7);
+
+		VipsBasedStoredResult result = VipsBasedResultCodec.decode(buffer);
+		assertEquals(1, result.getAreaCount());
+		assertEquals(4, result.getAreaY2(0));
+		assertEquals(-1, result.getAreaParent(0));
+	}
+
+	@Test
+	public void rejectsInvalidData()
+	{
+		ByteBuffer encoded = VipsBasedResultCodec.encode(new AreaImpl(0, 0, 10, 10),
+				new ArrayList<VipsBasedVisualBlock>(), new ArrayList<VipsBasedSeparator>());
+
+		ByteBuffer truncated = encoded.duplicate();
+		truncated.limit(truncated.limit() - 1);
+		assertRejected(truncated);
+
+		ByteBuffer wrongMagic = copy(encoded);
+		wrongMagic.putInt(0, 0);
+		assertRejected(wrongMagic);
+
+		ByteBuffer newerVersion = copy(encoded);
+		newerVersion.putInt(4, VipsBasedResultCodec.version + 1);
+		assertRejected(newerVersion);
+
+		ByteBuffer negativeCount = copy(encoded);
+		negativeCount.putInt(8, -1);
+		assertRejected(negativeCount);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void checksIndices()
+	{
+		VipsBasedResultCodec.decode(VipsBasedResultCodec.encode(new AreaImpl(0, 0, 10, 10),
+				new ArrayList<VipsBasedVisualBlock>(), new ArrayList<VipsBasedSeparator>())).getVisualBlockDoc(0);
+	}
+
+	@Test
+	public void emptyResultHasNoAreaTree()
+	{
+		ByteBuffer encoded = ByteBuffer.allocate(VipsBasedResultCodec.headerSize);
+		encoded.putInt(VipsBasedResultCodec.magic).putInt(VipsBasedResultCodec.version).putInt(0).putInt(0).putInt(0);
+		encoded.flip();
+		assertNull(VipsBasedResultCodec.decode(encoded).createAreaTree());
+	}
+
+	private static VipsBasedVisualBlock createBlock(AreaImpl area, float doc)
+	{
+		VipsBasedVisualBlock block = new VipsBasedVisualBlock();
+		block.setArea(area);
+		block.setDoc(doc);
+		return block;
+	}
+
+	private static void assertArea(VipsBasedStoredResult result, int index, Area area, int parent)
+	{
+		assertEquals(area.getX1(), result.getAreaX1(index));
+		assertEquals(area.getY1(), result.getAreaY1(index));
+		assertEquals(area.getX2(), result.getAreaX2(index));
+		assertEquals(area.getY2(), result.getAreaY2(index));
+		assertEquals(parent, result.getAreaParent(index));
+	}
+
+	private static void assertSameTree(Area expected, Area actual)
+	{
+		assertEquals(expected.getX1(), actual.getX1());
+		assertEquals(expected.getY1(), actual.getY1());
+		assertEquals(expected.getX2(), actual.getX2());
+		assertEquals(expected.getY2(), actual.getY2());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+		for (int i = 0; i < expected.getChildCount(); i++)
+			assertSameTree(expected.getChildArea(i), actual.getChildArea(i));
+	}
+
+	private static void assertRejected(ByteBuffer buffer)
+	{
+		try
+		{
+			VipsBasedResultCodec.decode(buffer);
+			fail("Invalid data decoded");
+		}
+		catch (IllegalArgumentException e)
+		{
+			//expected
+		}
+	}
+
+	private static ByteBuffer copy(ByteBuffer buffer)
+	{
+		ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+		copy.put(buffer.duplicate());
+		copy.flip();
+		return copy;
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * VipsBasedResultStoreTest.java
+ */
+package org.fit.vips;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.fit.segm.grouping.AreaImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Appending, reading, reopening and recovery of the result store
+ */
+public class VipsBasedResultStoreTest
+{
+	private static final int segmentSize = 4096;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsResultsAfterEveryAppend() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		try
+		{
+			//the results fill many segments and every read follows an append into the mapped part
+			for (int page = 1; page <= 2000; page++)
+			{
+				store.append(page, encode(page));
+				assertResult(page, store.get(page));
+			}
+			assertEquals(2000, store.size());
+			for (int page = 1; page <= 2000; page++)
+				assertResult(page, store.get(page));
+			assertNull(store.get(2001));
+			assertFalse(store.contains(2001));
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void replacesResultOfPage() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		try
+		{
+			store.append(7, encode(7));
+			store.append(7, encode(8));
+			assertEquals(1, store.size());
+			assertResult(8, store.get(7));
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void reopensClosedStore() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		for (int page = 1; page <= 500; page++)
+		{
+			store.append(page, encode(page));
+			store.get(page);
+		}
+		long dataSize = store.getDataSize();
+		//the mapping extends the data file beyond the data
+		assertTrue(getDataFile().length() > dataSize);
+		store.close();
+		assertEquals(dataSize, getDataFile().length());
+
+		store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		try
+		{
+			assertEquals(500, store.size());
+			assertEquals(dataSize, store.getDataSize());
+			for (int page = 1; page <= 500; page++)
+				assertResult(page, store.get(page));
+			store.append(501, encode(501));
+			assertResult(501, store.get(501));
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void recoversAfterCrash() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		for (int page = 1; page <= 100; page++)
+			store.append(page, encode(page));
+		long dataSize = store.getDataSize();
+		store.close();
+		long indexSize = getIndexFile().length();
+
+		//an extension for the mapping left by a crash and a result without its index entry
+		RandomAccessFile data = new RandomAccessFile(getDataFile(), "rw");
+		data.setLength(dataSize + 3 * segmentSize);
+		data.seek(dataSize);
+		data.write(toArray(encode(101)));
+		data.close();
+		//an entry pointing beyond the data and an incomplete entry
+		RandomAccessFile index = new RandomAccessFile(getIndexFile(), "rw");
+		index.seek(indexSize);
+		index.writeLong(102);
+		index.writeLong(dataSize + 10 * segmentSize);
+		index.writeInt(100);
+		index.write(new byte[] { 1, 2, 3 });
+		index.close();
+
+		store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		try
+		{
+			assertEquals(100, store.size());
+			assertEquals(dataSize, store.getDataSize());
+			assertEquals(dataSize, getDataFile().length());
+			assertEquals(indexSize, getIndexFile().length());
+			assertFalse(store.contains(101));
+			assertFalse(store.contains(102));
+			for (int page = 1; page <= 100; page++)
+				assertResult(page, store.get(page));
+
+			store.append(101, encode(101));
+			assertResult(101, store.get(101));
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void keepsSegmentSizeOfStore() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		for (int page = 1; page <= 200; page++)
+			store.append(page, encode(page));
+		store.close();
+
+		store = new VipsBasedResultStore(folder.getRoot());
+		try
+		{
+			assertEquals(segmentSize, store.getSegmentSize());
+			for (int page = 1; page <= 200; page++)
+				assertResult(page, store.get(page));
+		}
+		finally
+		{
+			store.close();
+		}
+
+		try
+		{
+			new VipsBasedResultStore(folder.getRoot(), 2 * segmentSize).close();
+			fail("Store opened with another segment size");
+		}
+		catch (IOException e)
+		{
+			//expected
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws IOException
+	{
+		RandomAccessFile data = new RandomAccessFile(getDataFile(), "rw");
+		data.writeLong(42);
+		data.writeLong(42);
+		data.close();
+		new VipsBasedResultStore(folder.getRoot()).close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTooLongResult() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), 64);
+		try
+		{
+			store.append(16, encode(16));
+		}
+		finally
+		{
+			store.close();
+		}
+	}
+
+	@Test
+	public void readsWhileAppending() throws Exception
+	{
+		final VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			store.append(1, encode(1));
+			List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 4; i++)
+			{
+				readers.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws IOException
+					{
+						int reads = 0;
+						while (store.size() < 1000)
+						{
+							int stored = store.size();
+							for (int page = Math.max(1, stored - 20); page <= stored; page++, reads++)
+								assertResult(page, store.get(page));
+						}
+						return reads;
+					}
+				}));
+			}
+			for (int page = 2; page <= 1000; page++)
+				store.append(page, encode(page));
+			for (Future<Integer> reader : readers)
+				assertTrue(reader.get() >= 0);
+		}
+		finally
+		{
+			executor.shutdownNow();
+			store.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void isClosed() throws IOException
+	{
+		VipsBasedResultStore store = new VipsBasedResultStore(folder.getRoot(), segmentSize);
+		store.append(1, encode(1));
+		store.close();
+		store.get(1);
+	}
+
+	private File getDataFile()
+	{
+		return new File(folder.getRoot(), VipsBasedResultStore.dataFileName);
+	}
+
+	private File getIndexFile()
+	{
+		return new File(folder.getRoot(), VipsBasedResultStore.indexFileName);
+	}
+
+	/**
+	 * @return encoded result with a page specific area tree of a page specific size
+	 */
+	private static ByteBuffer encode(int page)
+	{
+		AreaImpl root = new AreaImpl(0, 0, page, page + 1);
+		for (int i = 0; i < page % 17; i++)
+			root.appendChild(new AreaImpl(i, 0, i + 1, page));
+		return VipsBasedResultCodec.encode(root, new ArrayList<VipsBasedVisualBlock>(), new ArrayList<VipsBasedSeparator>());
+	}
+
+	private static void assertResult(int page, VipsBasedStoredResult result)
+	{
+		assertEquals(1 + page % 17, result.getAreaCount());
+		assertEquals(page, result.getAreaX2(0));
+		assertEquals(page + 1, result.getAreaY2(0));
+		if(result.getAreaCount() > 1)
+			assertEquals(page, result.getAreaY2(result.getAreaCount() - 1));
+	}
+
+	private static byte[] toArray(ByteBuffer buffer)
+	{
+		byte[] array = new byte[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+}